@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+/**
+ * A task which is never run, so the benchmarks can call JLBH directly once it is warmed up.
+ */
+final class BenchmarkTask implements JLBHTask {
+    static final int WARM_UP_ITERATIONS = 1_000;
+
+    @Override
+    public void init(JLBH jlbh) {
+    }
+
+    @Override
+    public void run(long startTimeNS) {
+    }
+
+    /**
+     * @return JLBH which has completed its warm up, so samples are recorded as they would be in a run
+     */
+    static JLBH warmedUp(JLBHOptions options) {
+        final JLBH jlbh = new JLBH(options
+                .warmUpIterations(WARM_UP_ITERATIONS)
+                .jlbhTask(new BenchmarkTask()));
+        for (int i = 0; i <= WARM_UP_ITERATIONS; i++)
+            jlbh.sample(1_000);
+        return jlbh;
+    }
+}
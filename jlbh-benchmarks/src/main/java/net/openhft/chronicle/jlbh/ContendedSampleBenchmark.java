@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The overhead of {@link JLBH#sample(long)} when samples are recorded by several threads, e.g. with
+ * {@link JLBHOptions#correlation(int, long)} or virtual threads, so they are recorded under a lock.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContendedSampleBenchmark {
+
+    private JLBH jlbh;
+
+    @Setup
+    public void setup() {
+        jlbh = BenchmarkTask.warmedUp(new JLBHOptions().correlation(1024, TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void uncontended(ThreadLatency thread) {
+        jlbh.sample(thread.next());
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void twoThreads(ThreadLatency thread) {
+        jlbh.sample(thread.next());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void fourThreads(ThreadLatency thread) {
+        jlbh.sample(thread.next());
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadLatency {
+        private long latencyNs;
+
+        // varies so the samples land in different buckets
+        long next() {
+            return 1_000 + (latencyNs++ & 1023);
+        }
+    }
+}
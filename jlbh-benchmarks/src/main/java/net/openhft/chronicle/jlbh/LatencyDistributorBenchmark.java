@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of choosing the interval to the next iteration with each of {@link LatencyDistributors}, on one thread and
+ * several, which use their own random numbers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatencyDistributorBenchmark {
+
+    @Param({"NORMAL", "RANDOM", "RANDOM2"})
+    public LatencyDistributors distributor;
+
+    // 100,000 iterations a second
+    @Param({"10000"})
+    public long averageLatencyNs;
+
+    @Benchmark
+    public long apply() {
+        return distributor.apply(averageLatencyNs);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long applyContended() {
+        return distributor.apply(averageLatencyNs);
+    }
+}
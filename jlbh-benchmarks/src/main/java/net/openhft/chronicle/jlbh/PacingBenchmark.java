@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long JLBH's pacing takes to busy wait until the start of the next iteration, compared with the interval
+ * requested, i.e. how late iterations start. Also measured with other threads busy waiting, as when several JLBH
+ * instances or pipelines share the machine. Use <code>-bm sample</code> to see the distribution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacingBenchmark {
+
+    @Param({"0", "100", "1000", "10000"})
+    public long intervalNs;
+
+    @Benchmark
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    public long busyWaitUntil() {
+        return JLBH.busyWaitUntil(System.nanoTime() + intervalNs);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long busyWaitUntilContended() {
+        return JLBH.busyWaitUntil(System.nanoTime() + intervalNs);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pause at the end of a run to calculate the percentiles of end to end and every probe, with and without
+ * {@link JLBHOptions#parallelPercentiles(boolean)}. The histograms have as many samples as a run of 100M iterations
+ * would spread over their buckets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PercentileEngineBenchmark {
+
+    @Param({"1", "8", "64"})
+    public int probes;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private Histogram[] histograms;
+    private PercentileEngine engine;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(1);
+        histograms = new Histogram[probes + 1];
+        for (int h = 0; h < histograms.length; h++) {
+            histograms[h] = new Histogram(35, 8, 100);
+            // a long tail, so every bucket up to ~10 ms is used
+            for (int i = 0; i < 1_000_000; i++)
+                histograms[h].sampleNanos((long) (1_000 / Math.pow(1 - random.nextDouble(), 1.5)) % 10_000_000);
+        }
+        engine = new PercentileEngine(parallel ? ForkJoinPool.commonPool() : null);
+    }
+
+    @Benchmark
+    public double[][] percentiles() {
+        return engine.percentiles(histograms, null);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of iterating the rows of the summary with {@link PercentileSummary#forEachRow}, for the percentiles of
+ * runs of 100M iterations, allocating a row per percentile or reusing one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PercentileSummaryBenchmark {
+
+    @Param({"5", "20"})
+    public int runs;
+
+    private PercentileSummary summary;
+    private double[] rowValues;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(1);
+        final double[] percentiles = Histogram.percentilesFor(100_000_000);
+        final List<double[]> percentileRuns = new ArrayList<>();
+        for (int run = 0; run < runs; run++) {
+            final double[] values = new double[percentiles.length];
+            for (int i = 0; i < values.length; i++)
+                values[i] = 1_000 * (i + 1) + random.nextInt(100);
+            percentileRuns.add(values);
+        }
+        summary = new PercentileSummary(true, percentileRuns, percentiles);
+        rowValues = new double[runs];
+    }
+
+    @Benchmark
+    public void forEachRow(Blackhole blackhole) {
+        summary.forEachRow((percentile, values, variance) -> blackhole.consume(variance));
+    }
+
+    @Benchmark
+    public void forEachRowReused(Blackhole blackhole) {
+        summary.forEachRow(rowValues, (percentile, values, variance) -> blackhole.consume(variance));
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.NanoSampler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The overhead of recording a sample with a probe's <code>sampleNanos</code>, which wraps the probe's histogram
+ * depending on the options.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProbeBenchmark {
+
+    /**
+     * plain - the probe's histogram
+     * deferred - with {@link JLBHOptions#deferredReporting(boolean)}, a double buffered histogram
+     * statistics - with {@link JLBHOptions#statistics(boolean)}
+     * interval - with an expected interval, see {@link JLBH#addProbe(String, long)}
+     */
+    @Param({"plain", "deferred", "statistics", "interval"})
+    public String mode;
+
+    private NanoSampler probe;
+    private long latencyNs;
+
+    @Setup
+    public void setup() {
+        final JLBHOptions options = new JLBHOptions();
+        if ("deferred".equals(mode))
+            options.deferredReporting(true);
+        if ("statistics".equals(mode))
+            options.statistics(true);
+        final JLBH jlbh = BenchmarkTask.warmedUp(options);
+        probe = "interval".equals(mode)
+                ? jlbh.addProbe("probe", TimeUnit.MICROSECONDS.toNanos(10))
+                : jlbh.addProbe("probe");
+    }
+
+    @Benchmark
+    public void sampleNanos() {
+        probe.sampleNanos(1_000 + (latencyNs++ & 1023));
+    }
+}
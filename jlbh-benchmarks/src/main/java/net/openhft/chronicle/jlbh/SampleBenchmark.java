@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The overhead of recording an end to end sample with {@link JLBH#sample(long)}, with the options which add to it.
+ * See {@link ContendedSampleBenchmark} for samples recorded by several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleBenchmark {
+
+    /**
+     * plain - the default, recorded by the task thread only
+     * statistics - with {@link JLBHOptions#statistics(boolean)}
+     * convergence - with {@link JLBHOptions#convergence(double, double...)}
+     * locked - with {@link JLBHOptions#correlation(int, long)}, so samples are recorded under a lock
+     */
+    @Param({"plain", "statistics", "convergence", "locked"})
+    public String mode;
+
+    private JLBH jlbh;
+    private long latencyNs;
+
+    @Setup
+    public void setup() {
+        final JLBHOptions options = new JLBHOptions();
+        switch (mode) {
+            case "statistics":
+                options.statistics(true);
+                break;
+            case "convergence":
+                // never converges, so every sample is batched
+                options.convergence(1e-9, 0.5, 0.99);
+                break;
+            case "locked":
+                options.correlation(1024, TimeUnit.SECONDS.toNanos(1));
+                break;
+            default:
+                break;
+        }
+        jlbh = BenchmarkTask.warmedUp(options);
+    }
+
+    @Benchmark
+    public void sample() {
+        // varies so the samples land in different buckets
+        jlbh.sample(1_000 + (latencyNs++ & 1023));
+    }
+}
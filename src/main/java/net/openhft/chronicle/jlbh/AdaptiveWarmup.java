@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides when warmup is complete by splitting the warmup samples into windows. Warmup is complete at the end of
+ * a window in which no JIT compilation happened and the 50th and 99th percentiles are within the tolerance of the
+ * previous window.
+ */
+final class AdaptiveWarmup {
+
+    private final int windowIterations;
+    private final double tolerance;
+    @NotNull
+    private final LongSupplier compilationTimeMS;
+    @NotNull
+    private final Histogram window;
+    private int count;
+    private long lastCompilationTimeMS = -1;
+    private double last50th;
+    private double last99th;
+    private boolean steadyState;
+
+    AdaptiveWarmup(int windowIterations, double tolerance, @NotNull Histogram window) {
+        this(windowIterations, tolerance, window, jitCompilationTimeMS());
+    }
+
+    AdaptiveWarmup(int windowIterations, double tolerance, @NotNull Histogram window, @NotNull LongSupplier compilationTimeMS) {
+        this.windowIterations = windowIterations;
+        this.tolerance = tolerance;
+        this.window = window;
+        this.compilationTimeMS = compilationTimeMS;
+    }
+
+    @NotNull
+    private static LongSupplier jitCompilationTimeMS() {
+        final CompilationMXBean compilationMXBean = ManagementFactory.getCompilationMXBean();
+        if (compilationMXBean == null || !compilationMXBean.isCompilationTimeMonitoringSupported())
+            return () -> 0;
+        return compilationMXBean::getTotalCompilationTime;
+    }
+
+    /**
+     * @param durationNs a warmup sample
+     * @return true once warmup has reached a steady state
+     */
+    boolean sample(long durationNs) {
+        window.sample(durationNs);
+        if (++count < windowIterations)
+            return false;
+        count = 0;
+
+        final long compilationTime = compilationTimeMS.getAsLong();
+        final double p50 = window.percentile(0.5);
+        final double p99 = window.percentile(0.99);
+        window.reset();
+
+        steadyState = compilationTime == lastCompilationTimeMS
+                && withinTolerance(p50, last50th)
+                && withinTolerance(p99, last99th);
+        lastCompilationTimeMS = compilationTime;
+        last50th = p50;
+        last99th = p99;
+        return steadyState;
+    }
+
+    private boolean withinTolerance(double value, double previous) {
+        return Math.abs(value - previous) <= previous * tolerance;
+    }
+
+    /**
+     * @return whether the last window was steady
+     */
+    boolean steadyState() {
+        return steadyState;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decides when a run has measured its percentiles precisely enough, see
+ * {@link JLBHOptions#convergence(double, double...)}
+ * <p>
+ * The samples of a run are split into batches, each recorded in an interval histogram. The percentiles of each batch
+ * are treated as independent estimates, so the 95% confidence interval of each percentile is estimated from the
+ * mean and variance of the batch values, i.e. the method of batch means.
+ */
+final class ConvergenceMonitor {
+    static final int MIN_BATCHES = 10;
+    // samples over the highest percentile in each batch
+    private static final int TAIL_SAMPLES = 100;
+    // Student's t for up to 8 degrees of freedom, where the expansion is inaccurate
+    private static final double[] STUDENT_T95 = {Double.POSITIVE_INFINITY, 12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306};
+
+    @NotNull
+    private final double[] percentiles;
+    private final double tolerance;
+    private final long batchSize;
+    @NotNull
+    private final Histogram interval;
+    // the mean and sum of squared differences from the mean of the batch values of each percentile
+    @NotNull
+    private final double[] mean;
+    @NotNull
+    private final double[] m2;
+    private long batches;
+    private volatile boolean converged;
+
+    ConvergenceMonitor(@NotNull double[] percentiles, double tolerance, @NotNull Histogram interval) {
+        this.percentiles = percentiles.clone();
+        this.tolerance = tolerance;
+        this.interval = interval;
+        double highest = 0;
+        for (double percentile : percentiles)
+            highest = Math.max(highest, percentile);
+        // rounded first, as e.g. 1 - 0.9 is slightly less than 0.1
+        this.batchSize = Math.max(1_000, (long) Math.ceil(Math.round(TAIL_SAMPLES / (1 - highest) * 1e6) / 1e6));
+        this.mean = new double[percentiles.length];
+        this.m2 = new double[percentiles.length];
+    }
+
+    void sampleNanos(long durationNs) {
+        interval.sampleNanos(durationNs);
+        if (interval.totalCount() >= batchSize)
+            endOfBatch();
+    }
+
+    private void endOfBatch() {
+        batches++;
+        boolean narrowEnough = batches >= MIN_BATCHES;
+        for (int p = 0; p < percentiles.length; p++) {
+            final double value = interval.percentile(percentiles[p]);
+            final double delta = value - mean[p];
+            mean[p] += delta / batches;
+            m2[p] += delta * (value - mean[p]);
+            narrowEnough &= relativeHalfWidth(p) <= tolerance;
+        }
+        interval.reset();
+        if (narrowEnough)
+            converged = true;
+    }
+
+    /**
+     * @return the half width of the confidence interval of a percentile, relative to its mean
+     */
+    private double relativeHalfWidth(int p) {
+        if (batches < 2)
+            return Double.POSITIVE_INFINITY;
+        if (mean[p] == 0)
+            return m2[p] == 0 ? 0 : Double.POSITIVE_INFINITY;
+        final double standardError = Math.sqrt(m2[p] / (batches - 1) / batches);
+        return studentT95(batches - 1) * standardError / mean[p];
+    }
+
+    /**
+     * @return the two sided 95% critical value of Student's t distribution, from a table for the few degrees of freedom
+     * of a handful of runs, otherwise by the Cornish-Fisher expansion
+     */
+    static double studentT95(long degreesOfFreedom) {
+        if (degreesOfFreedom < STUDENT_T95.length)
+            return STUDENT_T95[(int) degreesOfFreedom];
+        final double z = 1.959964;
+        final double z3 = z * z * z;
+        final double z5 = z3 * z * z;
+        final double v = degreesOfFreedom;
+        return z + (z3 + z) / (4 * v) + (5 * z5 + 16 * z3 + 3 * z) / (96 * v * v);
+    }
+
+    boolean converged() {
+        return converged;
+    }
+
+    /**
+     * @return the number of samples in complete batches
+     */
+    long samples() {
+        return batches * batchSize;
+    }
+
+    /**
+     * @return the half width of the 95% confidence interval of each percentile relative to its value, in the order
+     * requested
+     */
+    @NotNull
+    Map<Double, Double> relativeHalfWidths() {
+        final Map<Double, Double> halfWidths = new LinkedHashMap<>();
+        for (int p = 0; p < percentiles.length; p++)
+            halfWidths.put(percentiles[p], relativeHalfWidth(p));
+        return Collections.unmodifiableMap(halfWidths);
+    }
+
+    void reset() {
+        interval.reset();
+        Arrays.fill(mean, 0);
+        Arrays.fill(m2, 0);
+        batches = 0;
+        converged = false;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import net.openhft.chronicle.core.util.NanoSampler;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A histogram sampled when using {@link JLBHOptions#deferredReporting(boolean)}. At the end of a run the histogram
+ * sampled is swapped for a standby one, so the run can be reported by another thread while the next run is sampled.
+ * <p>
+ * Samples may be recorded by one thread at a time, which need not be the thread swapping. A swap waits for a sample
+ * which may have read the histogram before it was swapped out, so the histogram returned is no longer written to.
+ */
+final class DoubleBufferedHistogram implements NanoSampler {
+    @NotNull
+    private volatile Histogram active;
+    @NotNull
+    private Histogram standby;
+    // odd while a sample is being recorded, the volatile write orders it before reading the active histogram
+    private volatile int sampling;
+
+    DoubleBufferedHistogram(@NotNull Histogram active, @NotNull Histogram standby) {
+        this.active = active;
+        this.standby = standby;
+    }
+
+    @Override
+    public void sampleNanos(long durationNs) {
+        final int s = sampling;
+        sampling = s + 1;
+        active.sampleNanos(durationNs);
+        sampling = s + 2;
+    }
+
+    @NotNull
+    Histogram active() {
+        return active;
+    }
+
+    /**
+     * The histogram returned must be reset before the next swap, as it becomes the standby.
+     *
+     * @return the histogram sampled until now
+     */
+    @NotNull
+    Histogram swap() {
+        final Histogram sampled = active;
+        active = standby;
+        standby = sampled;
+        // a sample in progress may have read the histogram swapped out, any sample started later reads the new one
+        final int s = sampling;
+        if ((s & 1) != 0)
+            while (sampling == s)
+                Thread.yield();
+        return sampled;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.NanoSampler;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Corrects a probe for coordinated omission, see {@link JLBH#addProbe(String, long)}
+ * <p>
+ * A sample of <code>n</code> expected intervals means the samples which should have been taken during it were
+ * delayed, so samples of <code>n - 1</code>, <code>n - 2</code> ... 1 intervals are added.
+ */
+final class ExpectedIntervalSampler implements NanoSampler {
+    @NotNull
+    private final NanoSampler sampler;
+    @NotNull
+    private final NanoSampler backFill;
+    private final long expectedIntervalNs;
+
+    ExpectedIntervalSampler(@NotNull NanoSampler sampler, @NotNull NanoSampler backFill, long expectedIntervalNs) {
+        this.sampler = sampler;
+        this.backFill = backFill;
+        this.expectedIntervalNs = expectedIntervalNs;
+    }
+
+    @Override
+    public void sampleNanos(long durationNs) {
+        sampler.sampleNanos(durationNs);
+        for (long missing = durationNs - expectedIntervalNs; missing >= expectedIntervalNs; missing -= expectedIntervalNs)
+            backFill.sampleNanos(missing);
+    }
+}
@@ -20,10 +20,13 @@ package net.openhft.chronicle.jlbh;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
+import static java.util.Collections.unmodifiableList;
 import static java.util.Collections.unmodifiableMap;
 
 final class ImmutableJLBHResult implements JLBHResult {
@@ -33,11 +36,22 @@ final class ImmutableJLBHResult implements JLBHResult {
     @NotNull
     private final Map<String, ProbeResult> additionalProbeResults;
     private final ProbeResult osJitterResult;
+    @NotNull
+    private final List<Path> profiles;
+    @NotNull
+    private final List<Map<String, Double>> perfCountersPerIteration;
+    @NotNull
+    private final Map<String, JLBHResult> pipelines;
+    private final boolean customPercentiles;
 
-    ImmutableJLBHResult(@NotNull ProbeResult endToEndProbeResult, @NotNull Map<String, ? extends ProbeResult> additionalProbeResults, ProbeResult osJitterResult) {
+    ImmutableJLBHResult(@NotNull ProbeResult endToEndProbeResult, @NotNull Map<String, ? extends ProbeResult> additionalProbeResults, ProbeResult osJitterResult, @NotNull List<Path> profiles, @NotNull List<Map<String, Double>> perfCountersPerIteration, @NotNull Map<String, JLBHResult> pipelines, boolean customPercentiles) {
         this.endToEndProbeResult = endToEndProbeResult;
         this.additionalProbeResults = unmodifiableMap(additionalProbeResults);
         this.osJitterResult = osJitterResult;
+        this.profiles = unmodifiableList(profiles);
+        this.perfCountersPerIteration = unmodifiableList(perfCountersPerIteration);
+        this.pipelines = unmodifiableMap(pipelines);
+        this.customPercentiles = customPercentiles;
     }
 
     @Override
@@ -62,4 +76,33 @@ final class ImmutableJLBHResult implements JLBHResult {
         return Optional.ofNullable(osJitterResult);
     }
 
+    @Override
+    public boolean customPercentiles() {
+        return customPercentiles;
+    }
+
+    @Override
+    @NotNull
+    public List<Path> profiles() {
+        return profiles;
+    }
+
+    @Override
+    @NotNull
+    public List<Map<String, Double>> perfCountersPerIteration() {
+        return perfCountersPerIteration;
+    }
+
+    @Override
+    @NotNull
+    public Optional<JLBHResult> pipeline(String pipelineName) {
+        return Optional.ofNullable(pipelines.get(pipelineName));
+    }
+
+    @Override
+    @NotNull
+    public Set<String> pipelineNames() {
+        return pipelines.keySet();
+    }
+
 }
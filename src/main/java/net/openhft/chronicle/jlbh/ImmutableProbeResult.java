@@ -19,7 +19,9 @@
 package net.openhft.chronicle.jlbh;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.Collections.unmodifiableList;
@@ -34,6 +36,20 @@ final class ImmutableProbeResult implements JLBHResult.ProbeResult {
         runsSummary = unmodifiableList(percentileRuns.stream().map(ImmutableRunResult::new).collect(toList()));
     }
 
+    /**
+     * @param percentileRuns  the values of each run
+     * @param percentiles     of the values, or null for those of <code>Histogram.percentilesFor</code>
+     * @param statisticsRuns  the statistics of each run, or null if not recorded
+     */
+    ImmutableProbeResult(List<double[]> percentileRuns, @Nullable double[] percentiles, @Nullable List<RunStatistics> statisticsRuns) {
+        final List<JLBHResult.RunResult> runs = new ArrayList<>();
+        for (int i = 0; i < percentileRuns.size(); i++) {
+            final RunStatistics statistics = statisticsRuns == null || i >= statisticsRuns.size() ? null : statisticsRuns.get(i);
+            runs.add(new ImmutableRunResult(percentiles, percentileRuns.get(i), statistics));
+        }
+        runsSummary = unmodifiableList(runs);
+    }
+
     @NotNull
     @Override
     public JLBHResult.RunResult summaryOfLastRun() {
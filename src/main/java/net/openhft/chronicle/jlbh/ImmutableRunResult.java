@@ -23,7 +23,10 @@ import org.jetbrains.annotations.Nullable;
 
 import java.time.Duration;
 import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 
 import static java.time.temporal.ChronoUnit.NANOS;
 import static java.util.Collections.unmodifiableMap;
@@ -32,9 +35,35 @@ import static net.openhft.chronicle.jlbh.JLBHResult.RunResult.Percentile.*;
 final class ImmutableRunResult implements JLBHResult.RunResult {
 
     private final Map<Percentile, Duration> percentiles;
+    private final Map<Double, Duration> percentileValues;
+    @Nullable
+    private final RunStatistics statistics;
 
     public ImmutableRunResult(double[] percentiles) {
-        this.percentiles = asMap(percentiles);
+        this(null, percentiles, null);
+    }
+
+    /**
+     * @param percentiles the percentiles of the values, or null for those of <code>Histogram.percentilesFor</code>
+     * @param values      of each percentile in nanoseconds, the last is the worst
+     * @param statistics  of the run, or null if not recorded
+     */
+    ImmutableRunResult(@Nullable double[] percentiles, double[] values, @Nullable RunStatistics statistics) {
+        if (percentiles == null) {
+            this.percentiles = asMap(values);
+            this.percentileValues = JLBHResult.RunResult.super.percentileValues();
+        } else {
+            final Map<Percentile, Duration> data = new EnumMap<>(Percentile.class);
+            final Map<Double, Duration> valuesByPercentile = new LinkedHashMap<>();
+            for (int i = 0; i < percentiles.length && i < values.length; i++) {
+                final Duration duration = durationOf(values[i]);
+                valuesByPercentile.put(percentiles[i], duration);
+                Percentile.of(percentiles[i]).ifPresent(p -> data.put(p, duration));
+            }
+            this.percentiles = unmodifiableMap(data);
+            this.percentileValues = unmodifiableMap(valuesByPercentile);
+        }
+        this.statistics = statistics;
     }
 
     private static Map<Percentile, Duration> asMap(double[] percentiles) {
@@ -69,6 +98,18 @@ final class ImmutableRunResult implements JLBHResult.RunResult {
         return percentiles;
     }
 
+    @Override
+    @NotNull
+    public Map<Double, Duration> percentileValues() {
+        return percentileValues;
+    }
+
+    @Override
+    @NotNull
+    public Optional<RunStatistics> statistics() {
+        return Optional.ofNullable(statistics);
+    }
+
     @Override
     @NotNull
     public Duration get50thPercentile() {
@@ -108,7 +149,8 @@ final class ImmutableRunResult implements JLBHResult.RunResult {
     @Override
     public String toString() {
         return "ImmutableRunResult{" +
-                "percentiles=" + percentiles +
+                "percentiles=" + percentileValues +
+                (statistics == null ? "" : ", statistics=" + statistics) +
                 '}';
     }
 
@@ -119,12 +161,12 @@ final class ImmutableRunResult implements JLBHResult.RunResult {
 
         ImmutableRunResult summary = (ImmutableRunResult) o;
 
-        return percentiles.equals(summary.percentiles);
+        return percentileValues.equals(summary.percentileValues) && Objects.equals(statistics, summary.statistics);
 
     }
 
     @Override
     public int hashCode() {
-        return percentiles.hashCode();
+        return 31 * percentileValues.hashCode() + Objects.hashCode(statistics);
     }
 }
@@ -22,7 +22,6 @@ import net.openhft.affinity.Affinity;
 import net.openhft.affinity.AffinityLock;
 import net.openhft.chronicle.core.Jvm;
 import net.openhft.chronicle.core.annotation.SingleThreaded;
-import net.openhft.chronicle.core.io.IORuntimeException;
 import net.openhft.chronicle.core.threads.EventHandler;
 import net.openhft.chronicle.core.threads.EventLoop;
 import net.openhft.chronicle.core.threads.InvalidEventHandlerException;
@@ -31,17 +30,23 @@ import net.openhft.chronicle.core.util.NanoSampler;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.IOException;
 import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-import static java.lang.String.format;
-
 /**
  * Java Latency Benchmark Harness The harness is intended to be used for benchmarks where co-ordinated omission is an issue. Typically, these would be
  * of the producer/consumer nature where the start time for the benchmark may be on a different thread than the end time.
@@ -55,6 +60,7 @@ import static java.lang.String.format;
 public class JLBH implements NanoSampler {
     public static final int TIME_CALL_NANO_TIME = 18;
     private final SortedMap<String, Histogram> additionHistograms = new ConcurrentSkipListMap<>();
+    private final SortedMap<String, StageTracer> stageTracers = new ConcurrentSkipListMap<>();
     // wait time between invocations in nanoseconds
     private final long latencyBetweenTasks;
     private final LatencyDistributor latencyDistributor;
@@ -64,25 +70,119 @@ public class JLBH implements NanoSampler {
     private final PrintStream printStream;
     private final Consumer<JLBHResult> resultConsumer;
     @NotNull
+    private final List<JLBHReporter> reporters;
+    @NotNull
+    private final TextJLBHReporter textReporter;
+    @NotNull
     private final List<double[]> percentileRuns;
     @NotNull
     private final Map<String, List<double[]>> additionalPercentileRuns;
     @NotNull
     private final OSJitterMonitor osJitterMonitor = new OSJitterMonitor();
+    // swapped at the end of each run with deferred reporting
     @NotNull
-    private final Histogram endToEndHistogram = createHistogram();
+    private volatile Histogram endToEndHistogram = createHistogram();
     @NotNull
-    private final Histogram osJitterHistogram = createHistogram();
+    private volatile Histogram osJitterHistogram = createHistogram();
     @NotNull
     private final AtomicBoolean warmUpComplete = new AtomicBoolean();
     private final AtomicBoolean abortTestRun = new AtomicBoolean();
     private final long mod;
     private final long length;
+    // Long.MAX_VALUE unless JFR outlier events are enabled
+    private final long outlierThresholdNs;
     // Todo: Remove all concurrent constructs such as volatile and AtomicBoolean
     private volatile long noResultsReturned;
     //Use non-atomic when so thread synchronisation is necessary
     private boolean warmedUp;
     private volatile Thread testThread;
+    // the run being measured, read by the metrics server
+    private volatile int currentRun;
+    @Nullable
+    private JLBHMetricsServer metricsServer;
+    @Nullable
+    private JLBHFlightRecorder.RunEvent runEvent;
+    @NotNull
+    private final List<Path> profiles = new ArrayList<>();
+    @Nullable
+    private final PerfStat perfStat;
+    @NotNull
+    private final List<Map<String, Double>> perfCountersPerIteration = new ArrayList<>();
+    @Nullable
+    private final AdaptiveWarmup adaptiveWarmup;
+    // number of warmup samples, set before warmUpComplete
+    private long warmUpSamples;
+    @NotNull
+    private final List<JLBHPipeline> pipelines = new ArrayList<>();
+    @Nullable
+    private final VirtualThreadDriver virtualThreadDriver;
+
+    @Nullable
+    private final RequestCorrelator correlator;
+
+    // responses not received within the correlation timeout this run
+    private volatile long lostResponses;
+
+    // the number of requests kept in flight in each run, or null for open loop
+    @Nullable
+    private final int[] closedLoopConcurrency;
+
+    // samples and lost responses since the start of the run, only counted in closed loop mode
+    private volatile long completions;
+
+    private long latencySumNs;
+
+    private long runStartNs;
+
+    // reused for each batch, or null if not batching
+    @Nullable
+    private final long[] batchStartTimes;
+    // only used when samples can be recorded concurrently, or while a continuous run ends
+    @Nullable
+    private final Lock sampleLock;
+
+    // the percentiles of every run, if set in the options, or by the first run with a run duration or convergence
+    @Nullable
+    private double[] runPercentiles;
+
+    // the following are only used with JLBHOptions.statistics
+    @Nullable
+    private final StatisticsSampler endToEndStatistics;
+    @NotNull
+    private final SortedMap<String, StatisticsSampler> probeStatistics = new ConcurrentSkipListMap<>();
+    @NotNull
+    private final List<RunStatistics> statisticsRuns = new ArrayList<>();
+    @NotNull
+    private final Map<String, List<RunStatistics>> additionalStatisticsRuns = new TreeMap<>();
+
+    // the number of runs, which grows as outlier runs are repeated
+    private int runs;
+    // outlier runs which may still be repeated
+    private int outlierRunRepeats;
+    // the run number of each element of percentileRuns, as repeated runs replace outliers
+    @NotNull
+    private final List<Integer> runNumbers = new ArrayList<>();
+
+    @NotNull
+    private final PercentileEngine percentileEngine;
+
+    // ends a run early once its percentiles are precise enough, or null
+    @Nullable
+    private final ConvergenceMonitor convergence;
+
+    // the following are only used with deferred reporting
+    @Nullable
+    private final ExecutorService reporterExecutor;
+    @NotNull
+    private final SortedMap<String, DoubleBufferedHistogram> probeBuffers = new ConcurrentSkipListMap<>();
+    // sampled rather than the histograms themselves, so a swap waits for a sample in progress on another thread
+    @Nullable
+    private final DoubleBufferedHistogram endToEndBuffer;
+    @Nullable
+    private final DoubleBufferedHistogram osJitterBuffer;
+    // the report of the previous run, which must complete before its histograms are reused
+    @Nullable
+    private Future<?> pendingReport;
 
     /**
      * @param jlbhOptions Options to run the benchmark
@@ -117,22 +217,63 @@ public class JLBH implements NanoSampler {
         percentileRuns = new ArrayList<>();
         additionalPercentileRuns = new TreeMap<>();
         latencyDistributor = jlbhOptions.latencyDistributor;
+        reporters = new ArrayList<>();
+        textReporter = new TextJLBHReporter(printStream, jlbhOptions.allocationFreeReporting, jlbhOptions.percentiles != null);
+        reporters.add(textReporter);
+        reporters.addAll(jlbhOptions.reporters);
+        perfStat = jlbhOptions.perfCounterEvents == null ? null : new PerfStat(jlbhOptions.perfCounterEvents);
+        adaptiveWarmup = jlbhOptions.adaptiveWarmUpWindow <= 0 ? null
+                : new AdaptiveWarmup(jlbhOptions.adaptiveWarmUpWindow, jlbhOptions.adaptiveWarmUpTolerance, createHistogram());
+        for (JLBHOptions.Pipeline pipeline : jlbhOptions.pipelines)
+            pipelines.add(new JLBHPipeline(jlbhOptions, pipeline, printStream));
+        virtualThreadDriver = jlbhOptions.virtualThreadsMaxInFlight < 0 ? null
+                : new VirtualThreadDriver(jlbhOptions.jlbhTask, jlbhOptions.virtualThreadsMaxInFlight);
+        if (jlbhOptions.correlationCapacity > 0) {
+            if (virtualThreadDriver != null)
+                throw new UnsupportedOperationException("correlation is not supported with virtual threads");
+            correlator = new RequestCorrelator(jlbhOptions.correlationCapacity, jlbhOptions.correlationTimeoutNs);
+        } else {
+            correlator = null;
+        }
+        runPercentiles = jlbhOptions.percentiles == null ? null : jlbhOptions.percentiles.clone();
+        runs = jlbhOptions.runs;
+        percentileEngine = new PercentileEngine(jlbhOptions.parallelPercentiles ? ForkJoinPool.commonPool() : null);
+        outlierRunRepeats = jlbhOptions.outlierRunRepeats;
+        endToEndStatistics = jlbhOptions.statistics ? new StatisticsSampler(null) : null;
+        convergence = jlbhOptions.convergencePercentiles == null ? null
+                : new ConvergenceMonitor(jlbhOptions.convergencePercentiles, jlbhOptions.convergenceTolerance, createHistogram());
+        batchStartTimes = jlbhOptions.batchSize > 1 ? new long[jlbhOptions.batchSize] : null;
+        closedLoopConcurrency = jlbhOptions.closedLoopConcurrency;
+        if (closedLoopConcurrency != null && closedLoopConcurrency.length != jlbhOptions.runs)
+            throw new IllegalArgumentException("runs must be the number of closed loop concurrency levels");
+        // a ReentrantLock doesn't pin a virtual thread to its carrier
+        sampleLock = virtualThreadDriver != null || correlator != null || jlbhOptions.continuous ? new ReentrantLock() : null;
+        if (jlbhOptions.deferredReporting || jlbhOptions.continuous) {
+            if (!pipelines.isEmpty())
+                throw new UnsupportedOperationException("deferred reporting is not supported with pipelines");
+            reporterExecutor = Executors.newSingleThreadExecutor(r -> {
+                final Thread thread = new Thread(r, "jlbh-reporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            endToEndBuffer = new DoubleBufferedHistogram(endToEndHistogram, createHistogram());
+            osJitterBuffer = new DoubleBufferedHistogram(osJitterHistogram, createHistogram());
+        } else {
+            reporterExecutor = null;
+            endToEndBuffer = null;
+            osJitterBuffer = null;
+        }
 
-        this.length = jlbhOptions.iterations > 200_000_000 ? 60_000_000_000L
+        this.length = jlbhOptions.runDurationNs > 0 ? Math.max(5_000_000_000L, jlbhOptions.runDurationNs / 10)
+                : jlbhOptions.iterations > 200_000_000 ? 60_000_000_000L
                 : jlbhOptions.iterations > 50_000_000 ? 20_000_000_000L
                 : jlbhOptions.iterations > 10_000_000 ? 10_000_000_000L
                 : 5_000_000_000L;
         long mod2;
-        for (mod2 = 1000; mod2 <= jlbhOptions.iterations / 200; mod2 *= 10) {
+        for (mod2 = 1000; jlbhOptions.runDurationNs == 0 && mod2 <= jlbhOptions.iterations / 200; mod2 *= 10) {
         }
         this.mod = mod2;
-    }
-
-    static CharSequence padUntil(CharSequence cs, int length, char ch) {
-        StringBuilder sb = new StringBuilder(cs);
-        while (sb.length() < length)
-            sb.append(ch);
-        return sb;
+        this.outlierThresholdNs = jlbhOptions.jfrOutlierThresholdNs < 0 ? Long.MAX_VALUE : jlbhOptions.jfrOutlierThresholdNs;
     }
 
     /**
@@ -142,7 +283,68 @@ public class JLBH implements NanoSampler {
      * @return NanoSampler
      */
     public NanoSampler addProbe(String name) {
-        return additionHistograms.computeIfAbsent(name, n -> createHistogram());
+        final NanoSampler histogram = probeHistogram(name);
+        final NanoSampler sampler = outlierThresholdNs == Long.MAX_VALUE
+                ? histogram
+                : new JLBHFlightRecorder.OutlierSampler(name, histogram, outlierThresholdNs);
+        return locked(sampler);
+    }
+
+    @NotNull
+    private NanoSampler probeHistogram(String name) {
+        final Histogram histogram = additionHistograms.computeIfAbsent(name, n -> createHistogram());
+        final NanoSampler sampler = reporterExecutor == null ? histogram
+                : probeBuffers.computeIfAbsent(name, n -> new DoubleBufferedHistogram(histogram, createHistogram()));
+        if (!jlbhOptions.statistics)
+            return sampler;
+        return probeStatistics.computeIfAbsent(name, n -> new StatisticsSampler(sampler));
+    }
+
+    /**
+     * Add a probe to measure a section of the benchmark which is expected to be sampled at a regular interval.
+     * A sample longer than the interval means later samples were delayed, so samples are back-filled for them, the
+     * same as HdrHistogram's <code>recordValueWithExpectedInterval</code>, i.e. the probe is corrected for coordinated
+     * omission. The back-filled samples are not recorded as JFR outliers.
+     *
+     * @param name               Name of probe
+     * @param expectedIntervalNs the expected interval between samples, usually the time between iterations
+     * @return NanoSampler
+     */
+    public NanoSampler addProbe(String name, long expectedIntervalNs) {
+        if (expectedIntervalNs <= 0)
+            throw new IllegalArgumentException("expectedIntervalNs must be positive");
+        final NanoSampler sampler = addProbe(name);
+        final NanoSampler backFill = locked(probeHistogram(name));
+        return new ExpectedIntervalSampler(sampler, backFill, expectedIntervalNs);
+    }
+
+    @NotNull
+    private NanoSampler locked(@NotNull NanoSampler sampler) {
+        final Lock lock = sampleLock;
+        if (lock == null)
+            return sampler;
+        return durationNs -> {
+            lock.lock();
+            try {
+                sampler.sampleNanos(durationNs);
+            } finally {
+                lock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Add a tracer which records when each message completes each stage, so the end to end tail can be broken down
+     * by stage. The share of time spent in each stage by messages at or over the 99th percentile is reported for each
+     * run.
+     *
+     * @param name     Name of the tracer
+     * @param capacity the number of messages recorded, the most recent are analysed each run
+     * @param stages   Names of the stages in the order they are completed
+     * @return StageTracer
+     */
+    public StageTracer addStageTracer(String name, int capacity, String... stages) {
+        return stageTracers.computeIfAbsent(name, n -> new StageTracer(n, capacity, stages));
     }
 
     @NotNull
@@ -159,7 +361,20 @@ public class JLBH implements NanoSampler {
      * Start benchmark
      */
     public void start() {
+        if (!pipelines.isEmpty() && !jlbhOptions.accountForCoordinatedOmission)
+            throw new UnsupportedOperationException("Pipelines require accountForCoordinatedOmission");
+        if (!pipelines.isEmpty() && closedLoopConcurrency != null)
+            throw new UnsupportedOperationException("Pipelines are not supported in closed loop mode");
+        if (batchStartTimes != null && (!pipelines.isEmpty() || virtualThreadDriver != null || closedLoopConcurrency != null))
+            throw new UnsupportedOperationException("Batches are not supported with pipelines, virtual threads or closed loop mode");
+        if (jlbhOptions.continuous && closedLoopConcurrency != null)
+            throw new UnsupportedOperationException("Continuous mode is not supported in closed loop mode");
+        if ((jlbhOptions.runDurationNs > 0 || convergence != null) && !pipelines.isEmpty())
+            throw new UnsupportedOperationException("Pipelines are not supported with a run duration or convergence");
+        if (outlierRunRepeats > 0 && (jlbhOptions.continuous || closedLoopConcurrency != null || !pipelines.isEmpty()))
+            throw new UnsupportedOperationException("Outlier runs can't be repeated in continuous or closed loop mode, or with pipelines");
         startTimeoutCheckerIfRequired();
+        startMetricsServerIfRequired();
 
         this.testThread = Thread.currentThread();
         initStartOSJitterMonitor();
@@ -168,17 +383,30 @@ public class JLBH implements NanoSampler {
         int interruptCheckThrottleMask = 1024 - 1;
         AffinityLock lock = jlbhOptions.acquireLock.get();
         try {
-            for (int run = 0; run < jlbhOptions.runs && !abortTestRun.get(); run++) {
+            long startTimeNs = 0;
+            for (int run = 0; run < runs && !abortTestRun.get(); run++) {
+                currentRun = run + 1;
+                if (run > 0)
+                    startOfRun(run);
 
                 long runStart = System.currentTimeMillis();
-                long startTimeNs = System.nanoTime(), lastPrint = startTimeNs;
+                // in continuous mode the schedule carries on from the previous run
+                if (run == 0 || !jlbhOptions.continuous)
+                    startTimeNs = System.nanoTime();
+                long lastPrint = startTimeNs;
 
-                final long iterations = jlbhOptions.iterations;
+                final long runDurationNs = jlbhOptions.runDurationNs > 0 ? jlbhOptions.runDurationNs : Long.MAX_VALUE;
+                final long iterations = jlbhOptions.runDurationNs > 0 ? Long.MAX_VALUE : jlbhOptions.iterations;
 
-                for (int i = 0; i < iterations; i++) {
+                long i;
+                for (i = 0; i < iterations; i++) {
 
                     if (i % 16 == 0 && i % mod == 0 && startTimeNs > lastPrint + length) {
-                        System.out.printf("... run %,d out of %,d%n", i, iterations);
+                        if (jlbhOptions.runDurationNs > 0)
+                            System.out.printf("... run %,d after %,d s out of %,d s%n", i,
+                                    TimeUnit.NANOSECONDS.toSeconds(startTimeNs - runStartNs), TimeUnit.NANOSECONDS.toSeconds(runDurationNs));
+                        else
+                            System.out.printf("... run %,d out of %,d%n", i, iterations);
                         lastPrint = startTimeNs;
                         startTimeNs = System.nanoTime();
                     }
@@ -187,39 +415,24 @@ public class JLBH implements NanoSampler {
                         waitForWarmupToComplete(warmupStart);
                         runStart = System.currentTimeMillis();
                         startTimeNs = System.nanoTime();
+                        startOfRun(run);
 
+                    } else if (closedLoopConcurrency != null) {
+                        if (!awaitCompletion(i, closedLoopConcurrency[run]))
+                            break;
+                        startTimeNs = System.nanoTime();
+                    } else if (pipelines.isEmpty()) {
+                        startTimeNs = pace(startTimeNs, latencyDistributor.apply(this.latencyBetweenTasks));
                     } else {
-                        final long latencyBetweenTasks = latencyDistributor.apply(this.latencyBetweenTasks);
-                        if (jlbhOptions.accountForCoordinatedOmission) {
-                            startTimeNs += latencyBetweenTasks;
-                            final long now = System.nanoTime();
-                            if (now < startTimeNs) {
-                                long millis = (startTimeNs - now) / 1000000 - 2;
-                                if (millis > 0) {
-                                    Jvm.pause(millis);
-                                }
-                                // account for jitter in Thread.sleep() and wait until a fixed point in time
-                                startTimeNs = busyWaitUntil(startTimeNs);
-                            }
-
-                        } else {
-                            if (latencyBetweenTasks > 2e6) {
-                                long end = System.nanoTime() + latencyBetweenTasks;
-                                Jvm.pause(latencyBetweenTasks / 1_000_000 - 1);
-                                // account for jitter in Thread.sleep() and wait until a fixed point in time
-                                startTimeNs = busyWaitUntil(startTimeNs);
-
-                            } else {
-                                startTimeNs += latencyBetweenTasks - 14;
-                                long nowNS = System.nanoTime();
-                                if (startTimeNs < nowNS + TIME_CALL_NANO_TIME) {
-                                    startTimeNs = nowNS;
-                                } else {
-                                    // account for jitter in Thread.sleep() and wait until a fixed point in time
-                                    startTimeNs = busyWaitUntil(startTimeNs);
-                                }
-                            }
-                        }
+                        startTimeNs = paceWithPipelines(startTimeNs, latencyDistributor.apply(this.latencyBetweenTasks));
+                    }
+                    if (i == 0) {
+                        runStartNs = startTimeNs;
+                        for (JLBHPipeline pipeline : pipelines)
+                            pipeline.startOfRun(startTimeNs);
+                    } else if (startTimeNs - runStartNs >= runDurationNs
+                            || (convergence != null && convergence.converged())) {
+                        break;
                     }
 
                     if ((interruptCheckThrottle = (interruptCheckThrottle + 1) & interruptCheckThrottleMask) == 0
@@ -227,10 +440,20 @@ public class JLBH implements NanoSampler {
                         break;
                     }
 
-                    jlbhOptions.jlbhTask.run(startTimeNs);
+                    if (batchStartTimes == null) {
+                        runTask(startTimeNs);
+                    } else {
+                        final int count = (int) Math.min(batchStartTimes.length, iterations - i);
+                        startTimeNs = runBatch(startTimeNs, count, latencyBetweenTasks);
+                        i += count - 1;
+                    }
                 }
+                if (!pipelines.isEmpty())
+                    completePipelines();
 
-                endOfRun(run, runStart);
+                endOfRun(run, runStart, i);
+                if (run == runs - 1 && jlbhOptions.runToRunStatistics)
+                    runs += repeatOutlierRuns();
             }
         } finally {
             endOfAllRuns();
@@ -246,7 +469,104 @@ public class JLBH implements NanoSampler {
 
     }
 
-    private static long busyWaitUntil(long startTimeNs) {
+    /**
+     * Waits until the next iteration should start
+     *
+     * @param startTimeNs         the start time of the previous iteration
+     * @param latencyBetweenTasks the interval to the next iteration
+     * @return the start time of the next iteration
+     */
+    private long pace(long startTimeNs, long latencyBetweenTasks) {
+        if (jlbhOptions.accountForCoordinatedOmission) {
+            startTimeNs += latencyBetweenTasks;
+            final long now = System.nanoTime();
+            if (now < startTimeNs) {
+                long millis = (startTimeNs - now) / 1000000 - 2;
+                if (millis > 0) {
+                    Jvm.pause(millis);
+                }
+                // account for jitter in Thread.sleep() and wait until a fixed point in time
+                startTimeNs = busyWaitUntil(startTimeNs);
+            }
+
+        } else {
+            if (latencyBetweenTasks > 2e6) {
+                Jvm.pause(latencyBetweenTasks / 1_000_000 - 1);
+                // account for jitter in Thread.sleep() and wait until a fixed point in time
+                startTimeNs = busyWaitUntil(startTimeNs);
+
+            } else {
+                startTimeNs += latencyBetweenTasks - 14;
+                long nowNS = System.nanoTime();
+                if (startTimeNs < nowNS + TIME_CALL_NANO_TIME) {
+                    startTimeNs = nowNS;
+                } else {
+                    // account for jitter in Thread.sleep() and wait until a fixed point in time
+                    startTimeNs = busyWaitUntil(startTimeNs);
+                }
+            }
+        }
+        return startTimeNs;
+    }
+
+    /**
+     * Runs the iterations of the other pipelines which are due while waiting for the next iteration of the main task
+     */
+    private long paceWithPipelines(long startTimeNs, long latencyBetweenTasks) {
+        startTimeNs += latencyBetweenTasks;
+        long nowNS;
+        while ((nowNS = System.nanoTime()) < startTimeNs)
+            pauseUntilClose(Math.min(runPipelinesIfDue(nowNS), startTimeNs));
+        return startTimeNs;
+    }
+
+    /**
+     * Sleeps until shortly before the time given, leaving the rest to be busy waited to account for jitter in
+     * Thread.sleep()
+     */
+    private static void pauseUntilClose(long timeNs) {
+        final long millis = (timeNs - System.nanoTime()) / 1000000 - 2;
+        if (millis > 0)
+            Jvm.pause(millis);
+    }
+
+    private long runPipelinesIfDue(long nowNS) {
+        long next = Long.MAX_VALUE;
+        for (int i = 0; i < pipelines.size(); i++)
+            next = Math.min(next, pipelines.get(i).runIfDue(nowNS));
+        return next;
+    }
+
+    private void completePipelines() {
+        long next;
+        while (!abortTestRun.get() && !testThread.isInterrupted()
+                && (next = runPipelinesIfDue(System.nanoTime())) != Long.MAX_VALUE) {
+            pauseUntilClose(next);
+        }
+    }
+
+    /**
+     * Waits until fewer than <code>concurrency</code> requests are in flight, in closed loop mode
+     *
+     * @param issued      the number of requests issued so far
+     * @param concurrency the number of requests to keep in flight
+     * @return false if the test was aborted or interrupted while waiting
+     */
+    private boolean awaitCompletion(long issued, int concurrency) {
+        int spins = 0;
+        while (issued - completions >= concurrency) {
+            if (abortTestRun.get() || testThread.isInterrupted())
+                return false;
+            // requests are no longer being begun, so check for lost responses here
+            if (correlator != null && (++spins & 1023) == 0)
+                lostResponses(correlator.expire(System.nanoTime()));
+            Thread.yield();
+        }
+        return true;
+    }
+
+    // package-private for the benchmarks
+    static long busyWaitUntil(long startTimeNs) {
         long nanoTime;
         do {
             nanoTime = System.nanoTime();
@@ -255,6 +575,50 @@ public class JLBH implements NanoSampler {
         return startTimeNs;
     }
 
+    /**
+     * Runs a batch of iterations once the last of them is due, so batches keep the target throughput. If accounting
+     * for coordinated omission they are evenly spaced from the first start time, otherwise they all have the time the
+     * batch is dispatched.
+     *
+     * @param startTimeNs         the start time of the first iteration in the batch
+     * @param count               the number of iterations in the batch
+     * @param latencyBetweenTasks the interval between the iterations in the batch
+     * @return the start time of the last iteration in the batch
+     */
+    private long runBatch(long startTimeNs, int count, long latencyBetweenTasks) {
+        final long[] startTimes = batchStartTimes;
+        assert startTimes != null;
+        if (jlbhOptions.accountForCoordinatedOmission) {
+            for (int i = 0; i < count; i++)
+                startTimes[i] = startTimeNs + i * latencyBetweenTasks;
+            startTimeNs = pace(startTimeNs, (count - 1) * latencyBetweenTasks);
+        } else {
+            startTimeNs = pace(startTimeNs, (count - 1) * latencyBetweenTasks);
+            Arrays.fill(startTimes, 0, count, startTimeNs);
+        }
+        jlbhOptions.jlbhTask.runBatch(startTimes, count);
+        return startTimeNs;
+    }
+
+    private void runTask(long startTimeNs) {
+        if (virtualThreadDriver == null)
+            jlbhOptions.jlbhTask.run(startTimeNs);
+        else
+            virtualThreadDriver.run(startTimeNs);
+    }
+
+    private void startOfRun(int run) {
+        if (outlierThresholdNs != Long.MAX_VALUE)
+            runEvent = JLBHFlightRecorder.beginRun(run + 1);
+        if (jlbhOptions.profiler != null)
+            jlbhOptions.profiler.start(run + 1);
+        if (perfStat != null)
+            perfStat.start();
+        if (virtualThreadDriver != null)
+            virtualThreadDriver.startOfRun();
+        stageTracers.values().forEach(StageTracer::reset);
+    }
+
     private void startTimeoutCheckerIfRequired() {
         if (jlbhOptions.timeout > 0) {
             Thread sampleTimeoutChecker = new Thread(this::checkSampleTimeout);
@@ -263,25 +627,76 @@ public class JLBH implements NanoSampler {
         }
     }
 
+    private void startMetricsServerIfRequired() {
+        if (jlbhOptions.metricsPort >= 0 && metricsServer == null) {
+            metricsServer = new JLBHMetricsServer(this, jlbhOptions.metricsPort);
+            printStream.println("Metrics available on http://" + metricsServer.address().getHostString() + ":" + metricsServer.address().getPort() + "/metrics");
+        }
+    }
+
+    /**
+     * @return the address the metrics server is listening on, or null if not running.
+     */
+    @Nullable
+    public InetSocketAddress metricsAddress() {
+        JLBHMetricsServer server = this.metricsServer;
+        return server == null ? null : server.address();
+    }
+
+    int currentRun() {
+        return currentRun;
+    }
+
+    @NotNull
+    Histogram endToEndHistogram() {
+        return endToEndHistogram;
+    }
+
+    @NotNull
+    Map<String, Histogram> probeHistograms() {
+        return additionHistograms;
+    }
+
+    @Nullable
+    Histogram osJitterHistogram() {
+        return jlbhOptions.recordOSJitter ? osJitterHistogram : null;
+    }
+
     private void waitForWarmupToComplete(long warmupStart) {
-        while (!warmUpComplete.get()) {
+        while (!warmUpComplete.get() || pipelines.stream().anyMatch(p -> !p.jlbh.isWarmedUp())) {
             Jvm.pause(500);
+            if (correlator != null)
+                lostResponses(correlator.expire(System.nanoTime()));
             printStream.println("Complete: " + noResultsReturned);
             if (testThread.isInterrupted()) {
                 return;
             }
         }
-        printStream.println("Warm up complete (" + jlbhOptions.warmUpIterations + " iterations took " +
-                ((System.currentTimeMillis() - warmupStart) / 1000.0) + " s)");
+        final long warmupTime = System.currentTimeMillis() - warmupStart;
+        reporters.forEach(r -> r.warmedUp(warmUpSamples, warmupTime));
+        if (adaptiveWarmup != null) {
+            final boolean steadyState = adaptiveWarmup.steadyState();
+            reporters.forEach(r -> r.warmUpSteadyState(steadyState));
+        }
         if (jlbhOptions.pauseAfterWarmupMS != 0) {
             printStream.println("Pausing after warmup for " + jlbhOptions.pauseAfterWarmupMS + " ms");
             Jvm.pause(jlbhOptions.pauseAfterWarmupMS);
         }
         jlbhOptions.jlbhTask.warmedUp();
+        pipelines.forEach(p -> p.task.warmedUp());
+    }
+
+    int warmUpIterations() {
+        return jlbhOptions.warmUpIterations;
+    }
+
+    boolean isWarmedUp() {
+        return warmUpComplete.get();
     }
 
     private void initStartOSJitterMonitor() {
         jlbhOptions.jlbhTask.init(this);
+        pipelines.forEach(p -> p.task.init(p.jlbh));
         if (jlbhOptions.recordOSJitter) {
             osJitterMonitor.setDaemon(true);
             osJitterMonitor.start();
@@ -290,66 +705,406 @@ public class JLBH implements NanoSampler {
 
     private long warmup() {
         long warmupStart = System.currentTimeMillis();
-        for (int i = 0; i < jlbhOptions.warmUpIterations; i++) {
-            jlbhOptions.jlbhTask.run(System.nanoTime());
+        final double[] stages = jlbhOptions.warmUpRateStages;
+        if (closedLoopConcurrency != null) {
+            // at the first concurrency level
+            for (int i = 0; i < jlbhOptions.warmUpIterations && !warmUpComplete.get()
+                    && awaitCompletion(i, closedLoopConcurrency[0]); i++) {
+                runTask(System.nanoTime());
+            }
+            return warmupStart;
+        }
+        if (batchStartTimes != null && stages == null) {
+            // unpaced, the same as without batches
+            for (int i = 0; i < jlbhOptions.warmUpIterations && !warmUpComplete.get(); i += batchStartTimes.length) {
+                final int count = Math.min(batchStartTimes.length, jlbhOptions.warmUpIterations - i);
+                Arrays.fill(batchStartTimes, 0, count, System.nanoTime());
+                jlbhOptions.jlbhTask.runBatch(batchStartTimes, count);
+            }
+            return warmupStart;
+        }
+        if (stages == null) {
+            for (int i = 0; i < jlbhOptions.warmUpIterations && !warmUpComplete.get(); i++) {
+                runTask(System.nanoTime());
+            }
+            pipelines.forEach(JLBHPipeline::warmUp);
+            return warmupStart;
+        }
+        long startTimeNs = System.nanoTime();
+        int i = 0;
+        for (int stage = 0; stage < stages.length; stage++) {
+            final long endOfStage = (long) jlbhOptions.warmUpIterations * (stage + 1) / stages.length;
+            final long warmUpLatencyBetweenTasks = warmUpLatencyBetweenTasks(stages[stage]);
+            while (i < endOfStage && !warmUpComplete.get()) {
+                startTimeNs = pace(startTimeNs, latencyDistributor.apply(warmUpLatencyBetweenTasks));
+                if (batchStartTimes == null) {
+                    runTask(startTimeNs);
+                    i++;
+                } else {
+                    final int count = (int) Math.min(batchStartTimes.length, endOfStage - i);
+                    startTimeNs = runBatch(startTimeNs, count, warmUpLatencyBetweenTasks);
+                    i += count;
+                }
+            }
         }
+        pipelines.forEach(JLBHPipeline::warmUp);
         return warmupStart;
     }
 
+    private long warmUpLatencyBetweenTasks(double fractionOfThroughput) {
+        return (long) (latencyBetweenTasks / fractionOfThroughput);
+    }
+
     private void endOfAllRuns() {
-        printPercentilesSummary("end to end", percentileRuns, printStream);
+        // thrown once the task has completed, the same as if the last run was reported by this thread
+        RuntimeException reportFailure = null;
+        if (reporterExecutor != null) {
+            reporterExecutor.shutdown();
+            try {
+                awaitReport();
+            } catch (RuntimeException e) {
+                reportFailure = e;
+            }
+        }
+        reportSummary("end to end", percentileSummary(percentileRuns, statisticsRuns()));
         if (additionalPercentileRuns.size() > 0) {
-            additionalPercentileRuns.forEach((label, percentileRuns1) -> printPercentilesSummary(label, percentileRuns1, printStream));
+            additionalPercentileRuns.forEach((key, value) ->
+                    reportSummary(key, percentileSummary(value, additionalStatisticsRuns.get(key))));
+        }
+        for (JLBHPipeline pipeline : pipelines) {
+            reportSummary(pipeline.name, pipeline.jlbh.percentileSummary(pipeline.jlbh.percentileRuns));
+            pipeline.jlbh.additionalPercentileRuns.forEach((key, value) ->
+                    reportSummary(pipeline.name + ": " + key, pipeline.jlbh.percentileSummary(value)));
         }
+        reporters.forEach(JLBHReporter::complete);
 
         consumeResults();
 
+        if (virtualThreadDriver != null)
+            virtualThreadDriver.close();
         jlbhOptions.jlbhTask.complete();
+        pipelines.forEach(p -> p.task.complete());
+        // the task must not complete requests after its complete() returns
+        if (correlator != null)
+            correlator.close();
+        stageTracers.values().forEach(StageTracer::close);
+
+        if (metricsServer != null) {
+            metricsServer.close();
+            metricsServer = null;
+        }
+        if (reportFailure != null)
+            throw reportFailure;
     }
 
     public List<double[]> percentileRuns() {
         return percentileRuns;
     }
 
-    private void endOfRun(int run, long runStart) {
-        while (!abortTestRun.get() && endToEndHistogram.totalCount() < jlbhOptions.iterations) {
+    /**
+     * @param iterations the number of iterations run
+     */
+    private void endOfRun(int run, long runStart, long iterations) {
+        // in continuous mode the samples in flight are counted in the next run
+        final boolean lastRun = run == runs - 1;
+        while ((lastRun || !jlbhOptions.continuous) && !abortTestRun.get() && (responses() < iterations
+                || pipelines.stream().anyMatch(p -> p.jlbh.endToEndHistogram.totalCount() < p.iterations))) {
             Thread.yield();
         }
+        // the previous report has finished with the stage tracers' analysis and the standby histograms
+        awaitReport();
+        runNumbers.add(run + 1);
+
+        final long runTimeNs = System.nanoTime() - runStartNs;
+        final long runTimeMS = System.currentTimeMillis() - runStart;
+        final Map<String, Long> perfCounts = perfStat == null ? Collections.emptyMap() : perfStat.stop();
+        final Path profile = jlbhOptions.profiler == null ? null : jlbhOptions.profiler.stop(run + 1);
+        if (profile != null)
+            profiles.add(profile);
+        final RunReport report = runReport(run, runTimeNs, runTimeMS, perfCounts, profile);
+        if (!perfCounts.isEmpty())
+            perfCountersPerIteration.add(perIteration(perfCounts, report.iterations));
+        if (runEvent != null) {
+            JLBHFlightRecorder.endRun(runEvent, report.iterations);
+            runEvent = null;
+        }
+
+        stageTracers.values().forEach(StageTracer::analyseRun);
+
+        if (reporterExecutor != null) {
+            pendingReport = reporterExecutor.submit(() -> {
+                reportRun(report);
+                report.endToEnd.reset();
+                report.osJitter.reset();
+                report.probes.values().forEach(Histogram::reset);
+            });
+            jlbhOptions.jlbhTask.runComplete();
+            return;
+        }
 
-        long totalRunTime = System.currentTimeMillis() - runStart;
+        reportRun(report);
 
-        percentileRuns.add(endToEndHistogram.getPercentiles());
+        jlbhOptions.jlbhTask.runComplete();
+        pipelines.forEach(p -> p.task.runComplete());
 
-        printStream.println(padUntil("-------------------------------- BENCHMARK RESULTS (RUN " + (run + 1) + ") " + timeUnitToString(TimeUnit.MICROSECONDS) + " ----", 100, '-'));
-        printStream.println("Run time: " + totalRunTime / 1000.0 + " s, distribution: " + latencyDistributor);
-        printStream.println("Correcting for co-ordinated:" + jlbhOptions.accountForCoordinatedOmission);
-        printStream.println("Target throughput:" + jlbhOptions.throughput + "/" + timeUnitToString(jlbhOptions.throughputTimeUnit) + " = 1 message every " + (latencyBetweenTasks / 1000) + "us");
-        printStream.printf("%-48s", format("End to End: (%,d)", endToEndHistogram.totalCount()));
-        printStream.println(endToEndHistogram.toMicrosFormat());
+        resetHistograms();
+        pipelines.forEach(p -> p.jlbh.resetHistograms());
+        osJitterMonitor.reset();
+    }
 
-        if (additionHistograms.size() > 0) {
-            additionHistograms.forEach((key, value) -> {
-                List<double[]> ds = additionalPercentileRuns.computeIfAbsent(key,
-                        i -> new ArrayList<>());
-                ds.add(value.getPercentiles());
-//                if (value.totalCount() != jlbhOptions.iterations)
-//                    warning = " WARNING " + value.totalCount() + "!=" + jlbhOptions.iterations;
-                printStream.printf("%-48s", format("%s (%,d)", key, value.totalCount()));
-                printStream.println(value.toMicrosFormat());
+    /**
+     * Takes what was measured in the run. With deferred reporting, the histograms are swapped and the counters reset,
+     * so the next run can start while this one is reported and its histograms are reset.
+     */
+    @NotNull
+    private RunReport runReport(int run, long runTimeNs, long runTimeMS, @NotNull Map<String, Long> perfCounts,
+                                @Nullable Path profile) {
+        if (!jlbhOptions.continuous)
+            return takeRunReport(run, runTimeNs, runTimeMS, perfCounts, profile);
+        // the responses in flight are still being sampled, so the run is cut off between samples, otherwise a sample
+        // could be in the histogram of one run and the statistics of the next, or lost by the reset
+        assert sampleLock != null;
+        sampleLock.lock();
+        try {
+            return takeRunReport(run, runTimeNs, runTimeMS, perfCounts, profile);
+        } finally {
+            sampleLock.unlock();
+        }
+    }
+
+    @NotNull
+    private RunReport takeRunReport(int run, long runTimeNs, long runTimeMS, @NotNull Map<String, Long> perfCounts,
+                                    @Nullable Path profile) {
+        final long iterations = endToEndHistogram.totalCount();
+        final Map<String, RunStatistics> probeRunStatistics = new TreeMap<>();
+        probeStatistics.forEach((name, statistics) -> probeRunStatistics.put(name, statistics.statistics()));
+        final Histogram endToEnd = reporterExecutor == null ? endToEndHistogram : swapEndToEndHistogram();
+        final Histogram osJitter = reporterExecutor == null ? osJitterHistogram : swapOSJitterHistogram();
+        final Map<String, Histogram> probes = reporterExecutor == null ? additionHistograms : swapProbeHistograms();
+        final RunReport report = new RunReport(run, runTimeMS, endToEnd, probes, osJitter, perfCounts, iterations,
+                virtualThreadDriver == null ? 0 : virtualThreadDriver.maxInFlight(),
+                virtualThreadDriver == null ? 0 : virtualThreadDriver.endOfRunPinnedCount(),
+                lostResponses, iterations * 1e9 / runTimeNs, (double) latencySumNs / iterations,
+                convergence != null && convergence.converged(), convergence == null ? 0 : convergence.samples(),
+                convergence == null ? null : convergence.relativeHalfWidths(),
+                endToEndStatistics == null ? null : endToEndStatistics.statistics(), probeRunStatistics, profile);
+        if (reporterExecutor != null)
+            resetCounters();
+        return report;
+    }
+
+    private void reportRun(@NotNull RunReport report) {
+        addPercentilesOfRun(report.endToEnd, report.probes);
+        if (report.endToEndStatistics != null)
+            statisticsRuns.add(report.endToEndStatistics);
+        report.probeStatistics.forEach((key, value) ->
+                additionalStatisticsRuns.computeIfAbsent(key, i -> new ArrayList<>()).add(value));
+        pipelines.forEach(p -> p.jlbh.addPercentilesOfRun(p.jlbh.endToEndHistogram, p.jlbh.additionHistograms));
+
+        final int runNumber = report.run + 1;
+        for (JLBHReporter reporter : reporters) {
+            reporter.runHeader(runNumber, report.runTimeMS, latencyDistributor, jlbhOptions.accountForCoordinatedOmission,
+                    jlbhOptions.throughput, jlbhOptions.throughputTimeUnit, latencyBetweenTasks);
+            reporter.endToEnd(runNumber, report.endToEnd, percentilesOf(report.endToEnd));
+            if (report.endToEndStatistics != null)
+                reporter.statistics(runNumber, "end to end", report.endToEndStatistics);
+            report.probes.forEach((key, value) -> {
+                reporter.probe(runNumber, key, value, percentilesOf(value));
+                final RunStatistics statistics = report.probeStatistics.get(key);
+                if (statistics != null)
+                    reporter.statistics(runNumber, key, statistics);
             });
+            for (StageTracer tracer : stageTracers.values())
+                reporter.stageBreakdown(runNumber, tracer.name(), StageTracer.TAIL_PERCENTILE, tracer.tailMessages(), tailShares(tracer));
+            for (JLBHPipeline pipeline : pipelines) {
+                final JLBH jlbh = pipeline.jlbh;
+                reporter.probe(runNumber, pipeline.name, jlbh.endToEndHistogram, jlbh.percentilesOf(jlbh.endToEndHistogram));
+                jlbh.additionHistograms.forEach((key, value) -> reporter.probe(runNumber, pipeline.name + ": " + key, value, jlbh.percentilesOf(value)));
+            }
+            if (jlbhOptions.recordOSJitter)
+                reporter.osJitter(runNumber, report.osJitter, percentilesOf(report.osJitter));
+            if (!report.perfCounts.isEmpty())
+                reporter.perfCounters(runNumber, report.iterations, report.perfCounts);
+            if (virtualThreadDriver != null)
+                reporter.virtualThreads(runNumber, report.maxInFlight, report.pinnedCount);
+            if (correlator != null)
+                reporter.lostResponses(runNumber, report.lost);
+            if (report.relativeHalfWidths != null)
+                reporter.convergence(runNumber, report.convergenceSamples, report.converged, report.relativeHalfWidths);
+            if (closedLoopConcurrency != null)
+                reporter.closedLoop(runNumber, closedLoopConcurrency[report.run], report.throughput, report.meanLatencyNs,
+                        report.throughput * report.meanLatencyNs / 1e9);
+            if (report.profile != null)
+                reporter.profile(runNumber, report.profile);
+            reporter.runComplete(runNumber);
         }
-        if (jlbhOptions.recordOSJitter) {
-            printStream.printf("%-48s", format("OS Jitter (%,d)", osJitterHistogram.totalCount()));
-            printStream.println(osJitterHistogram.toMicrosFormat());
+    }
+
+    @NotNull
+    private Histogram swapEndToEndHistogram() {
+        assert endToEndBuffer != null;
+        final Histogram sampled = endToEndBuffer.swap();
+        endToEndHistogram = endToEndBuffer.active();
+        return sampled;
+    }
+
+    @NotNull
+    private Map<String, Histogram> swapProbeHistograms() {
+        final SortedMap<String, Histogram> probes = new TreeMap<>();
+        probeBuffers.forEach((name, buffer) -> {
+            probes.put(name, buffer.swap());
+            additionHistograms.put(name, buffer.active());
+        });
+        return probes;
+    }
+
+    /**
+     * The jitter thread isn't reset, which could reset the histogram swapped out while it is reported. The histogram
+     * swapped in is already empty.
+     */
+    @NotNull
+    private Histogram swapOSJitterHistogram() {
+        assert osJitterBuffer != null;
+        final Histogram sampled = osJitterBuffer.swap();
+        osJitterHistogram = osJitterBuffer.active();
+        return sampled;
+    }
+
+    /**
+     * Waits for the report of the previous run, with deferred reporting
+     */
+    private void awaitReport() {
+        final Future<?> report = pendingReport;
+        if (report == null)
+            return;
+        pendingReport = null;
+        try {
+            report.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the report of the previous run", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
         }
-        printStream.println(padUntil("----", 100, '-'));
+    }
 
-        jlbhOptions.jlbhTask.runComplete();
+    /**
+     * Flag the outlier runs once every run has completed, and remove the results of those to be repeated
+     *
+     * @return the number of runs to repeat
+     */
+    private int repeatOutlierRuns() {
+        awaitReport();
+        final int[] outliers = percentileSummary(percentileRuns).outlierRuns();
+        // the earliest outliers are repeated if there are too few repeats left
+        final int repeats = Math.min(outliers.length, outlierRunRepeats);
+        outlierRunRepeats -= repeats;
+        for (int k = 0; k < outliers.length; k++) {
+            final int runNumber = runNumbers.get(outliers[k]);
+            final boolean repeated = k < repeats;
+            reporters.forEach(r -> r.outlierRun(runNumber, repeated));
+        }
+        for (int k = repeats - 1; k >= 0; k--)
+            removeRun(outliers[k]);
+        return repeats;
+    }
 
-        noResultsReturned = 0;
+    private void removeRun(int index) {
+        // probes added after the first run have fewer runs, so are aligned from the last run
+        final int fromEnd = percentileRuns.size() - index;
+        runNumbers.remove(index);
+        percentileRuns.remove(index);
+        removeRun(statisticsRuns, fromEnd);
+        additionalPercentileRuns.values().forEach(probeRuns -> removeRun(probeRuns, fromEnd));
+        additionalStatisticsRuns.values().forEach(probeRuns -> removeRun(probeRuns, fromEnd));
+    }
+
+    private static void removeRun(@NotNull List<?> runs, int fromEnd) {
+        final int index = runs.size() - fromEnd;
+        if (index >= 0)
+            runs.remove(index);
+    }
+
+    /**
+     * The percentiles a run of a histogram is summarised with, so it is reported with the same
+     */
+    @NotNull
+    private double[] percentilesOf(@NotNull Histogram histogram) {
+        return runPercentiles == null ? Histogram.percentilesFor(histogram.totalCount()) : runPercentiles;
+    }
+
+    private void addPercentilesOfRun(@NotNull Histogram endToEnd, @NotNull Map<String, Histogram> probes) {
+        // the number of samples varies with a run duration or convergence, so every run has the percentiles of the first
+        if ((jlbhOptions.runDurationNs > 0 || convergence != null) && runPercentiles == null) {
+            runPercentiles = Histogram.percentilesFor(endToEnd.totalCount());
+            // so each run is written with the same percentiles as the summary
+            textReporter.reportedPercentiles();
+        }
+        final Histogram[] histograms = new Histogram[probes.size() + 1];
+        histograms[0] = endToEnd;
+        int index = 1;
+        for (Histogram probe : probes.values())
+            histograms[index++] = probe;
+        final double[][] percentiles = percentileEngine.percentiles(histograms, runPercentiles);
+        percentileRuns.add(percentiles[0]);
+        index = 1;
+        for (String name : probes.keySet())
+            additionalPercentileRuns.computeIfAbsent(name, i -> new ArrayList<>()).add(percentiles[index++]);
+    }
+
+    /**
+     * @return the number of samples and lost responses this run
+     */
+    private long responses() {
+        if (correlator != null)
+            lostResponses(correlator.expire(System.nanoTime()));
+        if (closedLoopConcurrency != null)
+            return completions;
+        return endToEndHistogram.totalCount() + lostResponses;
+    }
+
+    private void resetHistograms() {
+        resetCounters();
         additionHistograms.values().forEach(Histogram::reset);
         endToEndHistogram.reset();
-        osJitterMonitor.reset();
+    }
+
+    private void resetCounters() {
+        noResultsReturned = 0;
+        lostResponses = 0;
+        completions = 0;
+        latencySumNs = 0;
+        if (convergence != null)
+            convergence.reset();
+        resetStatistics();
+    }
+
+    private void resetStatistics() {
+        if (endToEndStatistics != null)
+            endToEndStatistics.reset();
+        probeStatistics.values().forEach(StatisticsSampler::reset);
+    }
+
+    @NotNull
+    private static Map<String, Double> tailShares(@NotNull StageTracer tracer) {
+        final String[] stages = tracer.stages();
+        final double[] shares = tracer.tailShares();
+        final Map<String, Double> tailShares = new LinkedHashMap<>();
+        for (int s = 0; s < stages.length; s++)
+            tailShares.put(stages[s], shares[s]);
+        return Collections.unmodifiableMap(tailShares);
+    }
+
+    @NotNull
+    private static Map<String, Double> perIteration(@NotNull Map<String, Long> counts, long iterations) {
+        final Map<String, Double> perIteration = new LinkedHashMap<>();
+        counts.forEach((event, count) -> perIteration.put(event, (double) count / Math.max(1, iterations)));
+        return Collections.unmodifiableMap(perIteration);
     }
 
     private void checkSampleTimeout() {
@@ -376,118 +1131,107 @@ public class JLBH implements NanoSampler {
      * Call this instead of {@link #start()} if you want to install JLBH as a handler on your event loop thread
      */
     public void eventLoopHandler(@NotNull EventLoop eventLoop) {
-        if (!jlbhOptions.accountForCoordinatedOmission)
+        eventLoopHandler(eventLoop, 1);
+    }
+
+    /**
+     * Call this instead of {@link #start()} if you want to install JLBH as several handlers on your event loop thread,
+     * so the iterations are interleaved with the other handlers on that thread. Each handler runs every nth
+     * iteration, so all of them must be run by the same thread e.g. added to an <code>EventGroup</code> with the
+     * default <code>MEDIUM</code> priority.
+     * <p>
+     * If a handler is called late it runs up to {@link JLBHOptions#maxIterationsPerAction(int)} iterations which are due.
+     *
+     * @param eventLoop to add the handlers to
+     * @param handlers  number of handlers to add
+     */
+    public void eventLoopHandler(@NotNull EventLoop eventLoop, int handlers) {
+        if (!pipelines.isEmpty() || virtualThreadDriver != null || closedLoopConcurrency != null || batchStartTimes != null
+                || jlbhOptions.continuous || jlbhOptions.runDurationNs > 0 || convergence != null
+                || jlbhOptions.outlierRunRepeats > 0)
             throw new UnsupportedOperationException();
+        if (handlers < 1)
+            throw new IllegalArgumentException("handlers must be at least 1");
+        startMetricsServerIfRequired();
         initStartOSJitterMonitor();
         eventLoop.addHandler(new WarmupHandler());
         Jvm.pause(100);
         waitForWarmupToComplete(System.currentTimeMillis());
-        eventLoop.addHandler(new JLBHEventHandler());
+        final EventLoopSchedule schedule = new EventLoopSchedule(handlers);
+        for (int h = 0; h < handlers; h++)
+            eventLoop.addHandler(new JLBHEventHandler(schedule, h));
     }
 
     private void consumeResults() {
         if (resultConsumer != null) {
-            final JLBHResult.ProbeResult endToEndProbeResult = new ImmutableProbeResult(percentileRuns);
-            final Map<String, ImmutableProbeResult> additionalProbeResults = additionalPercentileRuns.entrySet()
-                    .stream()
-                    .collect(Collectors.toMap(
-                            Map.Entry::getKey,
-                            probe -> new ImmutableProbeResult(probe.getValue())));
-            List<double[]> percentileRuns = Collections.singletonList(osJitterHistogram.getPercentiles());
-            ImmutableProbeResult osJitter = new ImmutableProbeResult(percentileRuns);
-            resultConsumer.accept(new ImmutableJLBHResult(endToEndProbeResult, additionalProbeResults, osJitter));
+            resultConsumer.accept(result());
         }
     }
 
+    @NotNull
+    private JLBHResult result() {
+        final JLBHResult.ProbeResult endToEndProbeResult = new ImmutableProbeResult(percentileRuns, runPercentiles, statisticsRuns());
+        final Map<String, ImmutableProbeResult> additionalProbeResults = additionalPercentileRuns.entrySet()
+                .stream()
+                .collect(Collectors.toMap(
+                        Map.Entry::getKey,
+                        probe -> new ImmutableProbeResult(probe.getValue(), runPercentiles, additionalStatisticsRuns.get(probe.getKey()))));
+        List<double[]> percentileRuns = Collections.singletonList(osJitterHistogram.getPercentiles());
+        ImmutableProbeResult osJitter = new ImmutableProbeResult(percentileRuns);
+        final Map<String, JLBHResult> pipelineResults = new LinkedHashMap<>();
+        pipelines.forEach(p -> pipelineResults.put(p.name, p.jlbh.result()));
+        return new ImmutableJLBHResult(endToEndProbeResult, additionalProbeResults, osJitter, profiles, perfCountersPerIteration, pipelineResults,
+                jlbhOptions.percentiles != null);
+    }
+
     public void printPercentilesSummary(
             String label,
             @NotNull List<double[]> percentileRuns,
             Appendable appendable) {
-        try {
-            appendable.append(
-                            padUntil("-------------------------------- SUMMARY (" + label + ") " + timeUnitToString(TimeUnit.MICROSECONDS) + " ----", 100, '-'))
-                    .append("\n");
-            double[] percentiles = Histogram.percentilesFor(jlbhOptions.iterations);
-            boolean skipFirst = percentiles.length > 3;
-            if (jlbhOptions.skipFirstRun == JLBHOptions.SKIP_FIRST_RUN.SKIP) {
-                skipFirst = true;
-            } else if (jlbhOptions.skipFirstRun == JLBHOptions.SKIP_FIRST_RUN.NO_SKIP) {
-                skipFirst = false;
-            }
-            PercentileSummary percentileSummary = new PercentileSummary(skipFirst, percentileRuns, percentiles);
-
-            appendable.append(generateRunSummaryHeader(jlbhOptions.runs)).append('\n');
-            percentileSummary.forEachRow((percentile, values, variance) -> {
-                try {
-                    appendable.append(formatPercentile(percentile));
-                    for (double value : values) {
-                        appendable.append(format("%12.2f ", value));
-                    }
-                    appendable.append(format("%12.2f%n", variance));
-                } catch (IOException e) {
-                    throw new IORuntimeException("Error writing percentile summary", e);
-                }
-            });
-            appendable.append(padUntil("----", 100, '-'))
-                    .append("\n");
-        } catch (IOException e) {
-            throw Jvm.rethrow(e);
-        }
+        TextJLBHReporter.appendSummary(appendable, label, jlbhOptions.runs, percentileSummary(percentileRuns));
     }
 
-    private String formatPercentile(double percentile) {
-        String s;
-        if (percentile == 1) {
-            s = "worst";
-        } else {
-            double p2 = Math.round(percentile * 1e6) / 1e4;
-            s = Double.toString(p2);
+    private void reportSummary(String label, @NotNull PercentileSummary percentileSummary) {
+        reporters.forEach(r -> r.summary(label, jlbhOptions.runs, percentileSummary));
+        if (jlbhOptions.runToRunStatistics) {
+            final int[] runNumbers = runNumbers(percentileSummary.runs());
+            reporters.forEach(r -> r.runToRunSummary(label, percentileSummary, runNumbers));
         }
-        s += ":     ";
-        return s.substring(0, 9);
     }
 
-    private void addPrToPrint(@NotNull StringBuilder sb, String pr, int runs) {
-        sb.append(pr);
-        for (int i = 0; i < runs; i++) {
-            sb.append("%12.2f ");
-        }
-        sb.append("%12.2f");
-        sb.append("%n");
+    /**
+     * @param runs the number of runs of a probe, which are the last runs if it was added after the first run
+     * @return the run number of each
+     */
+    @NotNull
+    private int[] runNumbers(int runs) {
+        final int[] numbers = new int[runs];
+        final int offset = runNumbers.size() - runs;
+        for (int i = 0; i < runs; i++)
+            numbers[i] = runNumbers.get(offset + i);
+        return numbers;
     }
 
-    private String generateRunSummaryHeader(int runs) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("Percentile");
-        for (int i = 1; i < runs + 1; i++) {
-            if (i == 1)
-                sb.append("   run").append(i);
-            else
-                sb.append("         run").append(i);
-        }
-        sb.append("      % Variation");
-        return sb.toString();
+    @NotNull
+    private PercentileSummary percentileSummary(@NotNull List<double[]> percentileRuns) {
+        return percentileSummary(percentileRuns, null);
+    }
+
+    @Nullable
+    private List<RunStatistics> statisticsRuns() {
+        return endToEndStatistics == null ? null : statisticsRuns;
     }
 
-    private String timeUnitToString(@NotNull TimeUnit timeUnit) {
-        switch (timeUnit) {
-            case NANOSECONDS:
-                return "ns";
-            case MICROSECONDS:
-                return "us";
-            case MILLISECONDS:
-                return "ms";
-            case SECONDS:
-                return "s";
-            case MINUTES:
-                return "min";
-            case HOURS:
-                return "h";
-            case DAYS:
-                return "day";
-            default:
-                throw new IllegalArgumentException("Unrecognized time unit value '" + timeUnit + "'");
+    @NotNull
+    private PercentileSummary percentileSummary(@NotNull List<double[]> percentileRuns, @Nullable List<RunStatistics> statisticsRuns) {
+        double[] percentiles = runPercentiles == null ? Histogram.percentilesFor(jlbhOptions.iterations) : runPercentiles;
+        boolean skipFirst = percentiles.length > 3;
+        if (jlbhOptions.skipFirstRun == JLBHOptions.SKIP_FIRST_RUN.SKIP) {
+            skipFirst = true;
+        } else if (jlbhOptions.skipFirstRun == JLBHOptions.SKIP_FIRST_RUN.NO_SKIP) {
+            skipFirst = false;
         }
+        return new PercentileSummary(skipFirst, percentileRuns, percentiles, statisticsRuns);
     }
 
     @Override
@@ -496,21 +1240,113 @@ public class JLBH implements NanoSampler {
     }
 
     public void sample(long durationNs) {
+        if (sampleLock == null) {
+            sample0(durationNs);
+            return;
+        }
+        sampleLock.lock();
+        try {
+            sample0(durationNs);
+        } finally {
+            sampleLock.unlock();
+        }
+    }
+
+    private void sample0(long durationNs) {
         noResultsReturned++;
-        if (noResultsReturned < jlbhOptions.warmUpIterations && !warmedUp) {
-            endToEndHistogram.sample(durationNs);
+        if (noResultsReturned < jlbhOptions.warmUpIterations && !warmedUp
+                && (adaptiveWarmup == null || !adaptiveWarmup.sample(durationNs))) {
+            sampleEndToEnd(durationNs);
+            if (closedLoopConcurrency != null)
+                completions++;
             return;
         }
-        if (noResultsReturned == jlbhOptions.warmUpIterations && !warmedUp) {
-            warmedUp = true;
-            endToEndHistogram.reset();
-            if (!additionHistograms.isEmpty()) {
-                additionHistograms.values().forEach(Histogram::reset);
-            }
-            warmUpComplete.set(true);
+        if (!warmedUp) {
+            completeWarmUp();
+            return;
+        }
+        sampleEndToEnd(durationNs);
+        if (endToEndStatistics != null)
+            endToEndStatistics.sampleNanos(durationNs);
+        if (convergence != null)
+            convergence.sampleNanos(durationNs);
+        if (durationNs > outlierThresholdNs)
+            JLBHFlightRecorder.outlier("end to end", durationNs);
+        if (closedLoopConcurrency != null) {
+            latencySumNs += durationNs;
+            completions++;
+        }
+    }
+
+    private void sampleEndToEnd(long durationNs) {
+        if (endToEndBuffer == null)
+            endToEndHistogram.sample(durationNs);
+        else
+            endToEndBuffer.sampleNanos(durationNs);
+    }
+
+    private void completeWarmUp() {
+        warmedUp = true;
+        warmUpSamples = noResultsReturned;
+        endToEndHistogram.reset();
+        if (!additionHistograms.isEmpty()) {
+            additionHistograms.values().forEach(Histogram::reset);
+        }
+        completions = 0;
+        resetStatistics();
+        warmUpComplete.set(true);
+    }
+
+    /**
+     * Records the start of a request, when using {@link JLBHOptions#correlation(int, long)}. Must be called by the
+     * thread running the task.
+     *
+     * @param id      of the request, unique while it is outstanding. <code>Long.MIN_VALUE</code> and
+     *                <code>Long.MIN_VALUE + 1</code> are reserved
+     * @param startNs the start time passed to the task
+     */
+    public void begin(long id, long startNs) {
+        if (correlator == null)
+            throw new IllegalStateException("correlation must be set in the JLBHOptions");
+        lostResponses(correlator.begin(id, startNs));
+    }
+
+    /**
+     * Samples the latency of a request begun with {@link #begin(long, long)}. May be called from any thread, until the
+     * task's {@link JLBHTask#complete()} returns.
+     *
+     * @param id of the request
+     * @return true if the request was outstanding, or false if it was unknown or had already been counted as lost
+     */
+    public boolean complete(long id) {
+        if (correlator == null)
+            throw new IllegalStateException("correlation must be set in the JLBHOptions");
+        final long startNs = correlator.complete(id);
+        if (startNs == RequestCorrelator.NOT_FOUND)
+            return false;
+        sample(System.nanoTime() - startNs);
+        return true;
+    }
+
+    // a lost response counts towards the warm up, but not the latency
+    private void lostResponses(int lost) {
+        if (lost == 0)
             return;
+        assert sampleLock != null;
+        sampleLock.lock();
+        try {
+            if (closedLoopConcurrency != null)
+                completions += lost;
+            if (warmedUp) {
+                lostResponses += lost;
+                return;
+            }
+            noResultsReturned += lost;
+            if (noResultsReturned >= jlbhOptions.warmUpIterations)
+                completeWarmUp();
+        } finally {
+            sampleLock.unlock();
         }
-        endToEndHistogram.sample(durationNs);
     }
 
     @NotNull
@@ -545,7 +1381,10 @@ public class JLBH implements NanoSampler {
                     for (int i = 0; i < 1000; i++) {
                         long time = System.nanoTime();
                         if (time - lastTime > jlbhOptions.recordJitterGreaterThanNs) {
-                            osJitterHistogram.sampleNanos(time - lastTime);
+                            if (osJitterBuffer == null)
+                                osJitterHistogram.sampleNanos(time - lastTime);
+                            else
+                                osJitterBuffer.sampleNanos(time - lastTime);
                         }
                         lastTime = time;
                     }
@@ -567,75 +1406,135 @@ public class JLBH implements NanoSampler {
         }
     }
 
-    private final class JLBHEventHandler implements EventHandler {
+    /**
+     * The schedule shared by the handlers added by {@link #eventLoopHandler(EventLoop, int)}. Each handler runs every
+     * nth iteration, so they must all be called from the same event loop thread.
+     */
+    private final class EventLoopSchedule {
+        private final int handlers;
+        private final long[] nextInvokeTime;
+        private final long[] remaining;
         private int run;
-        private long iteration, i;
+        private long done;
         private long runStart;
-        private long nextInvokeTime;
+        private int handlersRunning;
         private boolean waitingForEndOfRun = false;
+        private boolean finished = false;
         private long lastPrint;
 
-        JLBHEventHandler() {
-            resetTime();
-            this.lastPrint = nextInvokeTime;
+        EventLoopSchedule(int handlers) {
+            this.handlers = handlers;
+            this.nextInvokeTime = new long[handlers];
+            this.remaining = new long[handlers];
+            currentRun = 1;
         }
 
         private void resetTime() {
+            final long iterations = jlbhOptions.iterations;
             runStart = System.currentTimeMillis();
-            nextInvokeTime = System.nanoTime() + latencyBetweenTasks;
+            final long now = System.nanoTime();
+            for (int h = 0; h < handlers; h++) {
+                // staggered so together they run at the target throughput
+                nextInvokeTime[h] = now + latencyBetweenTasks * (h + 1);
+                remaining[h] = iterations / handlers + (h < iterations % handlers ? 1 : 0);
+            }
+            handlersRunning = handlers;
+            done = 0;
+            startOfRun(run);
         }
 
-        @Override
-        public boolean action() throws InvalidEventHandlerException {
-            boolean busy = false;
-            final long iterations = jlbhOptions.iterations;
-
-            if (!waitingForEndOfRun) {
-                long now = System.nanoTime();
-                if (now >= nextInvokeTime) {
-                    jlbhOptions.jlbhTask.run(nextInvokeTime);
-                    nextInvokeTime += latencyBetweenTasks;
-                    ++iteration;
-                    busy = true;
-
-                    if (i >= iterations - 1) {
-                        waitingForEndOfRun = true;
-                        i = 0;
-                        run++;
-                    } else {
-                        i++;
-                    }
-
-                    if (i % 16 == 0 && i % mod == 0 && nextInvokeTime > lastPrint + length) {
-                        System.out.printf("... run %,d out of %,d%n", i, iterations);
-                        lastPrint = nextInvokeTime;
-                    }
-                }
-            } else {
-                if (endToEndHistogram.totalCount() >= iterations) {
-                    endOfRun(run - 1, runStart);
-                    resetTime();
-                    waitingForEndOfRun = false;
+        boolean action(int handler) throws InvalidEventHandlerException {
+            if (finished)
+                throw new InvalidEventHandlerException();
+            if (runStart == 0) {
+                // start the first run on the event loop thread, so it is the thread profiled
+                resetTime();
+                lastPrint = System.nanoTime();
+            }
+            if (waitingForEndOfRun) {
+                if (responses() >= jlbhOptions.iterations) {
+                    endOfRun(run - 1, runStart, jlbhOptions.iterations);
                     if (run == jlbhOptions.runs) {
+                        finished = true;
                         endOfAllRuns();
                         throw new InvalidEventHandlerException();
                     }
+                    resetTime();
+                    currentRun = run + 1;
+                    waitingForEndOfRun = false;
+                }
+                return false;
+            }
+            if (remaining[handler] <= 0)
+                return false;
+
+            // catch up in batches if called late
+            final long now = System.nanoTime();
+            final long interval = latencyBetweenTasks * handlers;
+            int batch = 0;
+            for (; batch < jlbhOptions.maxIterationsPerAction && now >= nextInvokeTime[handler]; batch++) {
+                final long startTimeNs = jlbhOptions.accountForCoordinatedOmission ? nextInvokeTime[handler] : now;
+                jlbhOptions.jlbhTask.run(startTimeNs);
+                nextInvokeTime[handler] = startTimeNs + latencyDistributor.apply(interval);
+                ++done;
+
+                if (done % 16 == 0 && done % mod == 0 && startTimeNs > lastPrint + length) {
+                    System.out.printf("... run %,d out of %,d%n", done, jlbhOptions.iterations);
+                    lastPrint = startTimeNs;
+                }
+                if (--remaining[handler] <= 0) {
+                    if (--handlersRunning == 0) {
+                        waitingForEndOfRun = true;
+                        run++;
+                    }
+                    batch++;
+                    break;
                 }
             }
+            return batch > 0;
+        }
+    }
+
+    private static final class JLBHEventHandler implements EventHandler {
+        @NotNull
+        private final EventLoopSchedule schedule;
+        private final int handler;
 
-            return busy;
+        JLBHEventHandler(@NotNull EventLoopSchedule schedule, int handler) {
+            this.schedule = schedule;
+            this.handler = handler;
+        }
+
+        @Override
+        public boolean action() throws InvalidEventHandlerException {
+            return schedule.action(handler);
         }
     }
 
     private final class WarmupHandler implements EventHandler {
         private int iteration;
+        private long nextInvokeTime;
 
         @Override
         public boolean action() throws InvalidEventHandlerException {
-            if (iteration >= jlbhOptions.warmUpIterations)
+            if (iteration >= jlbhOptions.warmUpIterations || warmUpComplete.get())
                 throw InvalidEventHandlerException.reusable();
 
-            jlbhOptions.jlbhTask.run(System.nanoTime());
+            final double[] stages = jlbhOptions.warmUpRateStages;
+            if (stages == null) {
+                jlbhOptions.jlbhTask.run(System.nanoTime());
+            } else {
+                // paced the same way as EventLoopSchedule, one iteration per action
+                final long now = System.nanoTime();
+                if (nextInvokeTime == 0)
+                    nextInvokeTime = now;
+                if (now < nextInvokeTime)
+                    return false;
+                final long startTimeNs = jlbhOptions.accountForCoordinatedOmission ? nextInvokeTime : now;
+                jlbhOptions.jlbhTask.run(startTimeNs);
+                final int stage = (int) ((long) iteration * stages.length / jlbhOptions.warmUpIterations);
+                nextInvokeTime = startTimeNs + latencyDistributor.apply(warmUpLatencyBetweenTasks(stages[stage]));
+            }
             ++iteration;
             return true;
         }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import net.openhft.chronicle.core.util.NanoSampler;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * JLBH specific Java Flight Recorder events so outliers and runs can be lined up with GC, safepoint and
+ * other events in the same recording.
+ * <p>
+ * This class is only loaded when {@link JLBHOptions#jfrOutlierThresholdNs(long)} is set, so JLBH can still
+ * be used on a JVM without JFR.
+ */
+final class JLBHFlightRecorder {
+
+    // Suppresses default constructor, ensuring non-instantiability.
+    private JLBHFlightRecorder() {
+    }
+
+    static void outlier(@NotNull String probe, long latencyNs) {
+        final OutlierSampleEvent event = new OutlierSampleEvent();
+        if (event.isEnabled()) {
+            event.intendedStartNanoTime = System.nanoTime() - latencyNs;
+            event.latency = latencyNs;
+            event.probe = probe;
+            event.commit();
+        }
+    }
+
+    @NotNull
+    static RunEvent beginRun(int run) {
+        final RunEvent event = new RunEvent();
+        event.run = run;
+        event.begin();
+        return event;
+    }
+
+    static void endRun(@NotNull RunEvent event, long iterations) {
+        event.iterations = iterations;
+        event.commit();
+    }
+
+    @Name("net.openhft.chronicle.jlbh.OutlierSample")
+    @Label("Outlier Sample")
+    @Description("A sample above the JLBH outlier threshold, recorded when the sample completed")
+    @Category("JLBH")
+    @StackTrace(false)
+    static final class OutlierSampleEvent extends Event {
+        @Label("Probe")
+        String probe;
+
+        @Label("Latency")
+        @Timespan
+        long latency;
+
+        @Label("Intended Start")
+        @Description("System.nanoTime() the sample was intended to start, i.e. the time of this event less the latency")
+        long intendedStartNanoTime;
+    }
+
+    @Name("net.openhft.chronicle.jlbh.Run")
+    @Label("Run")
+    @Description("A measured JLBH run, from the first iteration to all samples being recorded")
+    @Category("JLBH")
+    @StackTrace(false)
+    static final class RunEvent extends Event {
+        @Label("Run")
+        int run;
+
+        @Label("Iterations")
+        long iterations;
+    }
+
+    /**
+     * Records a JFR event for each sample over the threshold, as well as sampling the histogram.
+     */
+    static final class OutlierSampler implements NanoSampler {
+        @NotNull
+        private final String probe;
+        @NotNull
+        private final NanoSampler histogram;
+        private final long outlierThresholdNs;
+
+        OutlierSampler(@NotNull String probe, @NotNull NanoSampler histogram, long outlierThresholdNs) {
+            this.probe = probe;
+            this.histogram = histogram;
+            this.outlierThresholdNs = outlierThresholdNs;
+        }
+
+        @Override
+        public void sampleNanos(long durationNs) {
+            histogram.sampleNanos(durationNs);
+            if (durationNs > outlierThresholdNs)
+                outlier(probe, durationNs);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.openhft.chronicle.core.io.IORuntimeException;
+import net.openhft.chronicle.core.util.Histogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Exposes the histograms of the current run in the OpenMetrics text format on <code>/metrics</code>.
+ * <p>
+ * Each scrape reads the histograms from the HTTP server thread while they are being written to by the benchmark,
+ * so values are approximate, but nothing is added to the cost of recording a sample.
+ */
+final class JLBHMetricsServer {
+    static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 0.9999, 1.0};
+
+    @NotNull
+    private final JLBH jlbh;
+    @NotNull
+    private final HttpServer server;
+
+    JLBHMetricsServer(@NotNull JLBH jlbh, int port) {
+        this.jlbh = jlbh;
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            throw new IORuntimeException("Unable to start metrics server on port " + port, e);
+        }
+        server.createContext("/metrics", this::handle);
+        server.start();
+    }
+
+    static void appendLabelValue(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '\\' || ch == '"')
+                sb.append('\\').append(ch);
+            else if (ch == '\n')
+                sb.append("\\n");
+            else
+                sb.append(ch);
+        }
+    }
+
+    private static void family(StringBuilder sb, String name, String help) {
+        sb.append("# TYPE ").append(name).append(" summary\n");
+        sb.append("# UNIT ").append(name).append(" seconds\n");
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    private static void summary(StringBuilder sb, String name, String probe, Histogram histogram) {
+        // read the count first so the quantiles are at least as recent
+        final long count = histogram.totalCount();
+        for (double quantile : QUANTILES) {
+            sb.append(name).append('{');
+            if (probe != null) {
+                sb.append("probe=\"");
+                appendLabelValue(sb, probe);
+                sb.append("\",");
+            }
+            sb.append("quantile=\"").append(quantile).append("\"} ");
+            sb.append(count == 0 ? Double.NaN : histogram.percentile(quantile) / 1e9).append('\n');
+        }
+        sb.append(name).append("_count");
+        if (probe != null) {
+            sb.append("{probe=\"");
+            appendLabelValue(sb, probe);
+            sb.append("\"}");
+        }
+        sb.append(' ').append(count).append('\n');
+    }
+
+    String scrape() {
+        final StringBuilder sb = new StringBuilder(1024);
+        sb.append("# TYPE jlbh_run gauge\n");
+        sb.append("# HELP jlbh_run The run currently being measured, 0 during warmup.\n");
+        sb.append("jlbh_run ").append(jlbh.currentRun()).append('\n');
+
+        family(sb, "jlbh_end_to_end_latency_seconds", "End to end latency of the current run.");
+        summary(sb, "jlbh_end_to_end_latency_seconds", null, jlbh.endToEndHistogram());
+
+        final Map<String, ? extends Histogram> probes = jlbh.probeHistograms();
+        if (!probes.isEmpty()) {
+            family(sb, "jlbh_probe_latency_seconds", "Latency recorded by each probe in the current run.");
+            probes.forEach((name, histogram) -> summary(sb, "jlbh_probe_latency_seconds", name, histogram));
+        }
+
+        final Histogram osJitter = jlbh.osJitterHistogram();
+        if (osJitter != null) {
+            family(sb, "jlbh_os_jitter_seconds", "OS jitter observed in the current run.");
+            summary(sb, "jlbh_os_jitter_seconds", null, osJitter);
+        }
+        sb.append("# EOF\n");
+        return sb.toString();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            final byte[] bytes = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @NotNull
+    InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    void close() {
+        server.stop(0);
+    }
+}
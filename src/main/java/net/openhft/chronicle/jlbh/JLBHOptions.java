@@ -23,8 +23,15 @@ import net.openhft.affinity.Affinity;
 import net.openhft.affinity.AffinityLock;
 import net.openhft.chronicle.core.Jvm;
 import net.openhft.chronicle.core.annotation.SingleThreaded;
+import net.openhft.chronicle.jlbh.profiler.JFRProfiler;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
@@ -51,6 +58,39 @@ public class JLBHOptions {
     boolean jitterAffinity;
     Supplier<AffinityLock> acquireLock = Affinity::acquireLock;
     long timeout;
+    final List<JLBHReporter> reporters = new ArrayList<>();
+    int metricsPort = -1;
+    long jfrOutlierThresholdNs = -1;
+    @Nullable
+    JLBHProfiler profiler;
+    @Nullable
+    String[] perfCounterEvents;
+    int adaptiveWarmUpWindow;
+    @Nullable
+    double[] warmUpRateStages;
+    final List<Pipeline> pipelines = new ArrayList<>();
+    int maxIterationsPerAction = 64;
+    int virtualThreadsMaxInFlight = -1;
+    int correlationCapacity;
+    @Nullable
+    int[] closedLoopConcurrency;
+    int batchSize = 1;
+    boolean allocationFreeReporting;
+    boolean deferredReporting;
+    boolean continuous;
+    long runDurationNs;
+    double convergenceTolerance;
+    @Nullable
+    double[] percentiles;
+    boolean statistics;
+    boolean runToRunStatistics;
+    boolean parallelPercentiles;
+    int outlierRunRepeats;
+    @Nullable
+    double[] convergencePercentiles;
+    long correlationTimeoutNs;
+    double adaptiveWarmUpTolerance;
+
     /**
      * Number of iterations per second to be pushed through the benchmark
      *
@@ -125,7 +165,7 @@ public class JLBHOptions {
     }
 
     /**
-     * Determines how many warmup iterations to perform.
+     * Determines how many warmup iterations to perform, or the maximum if {@link #adaptiveWarmUp(int, double, int)} is used.
      * Note: warmup iterations are continuous.
      *
      * @param warmUp Defaults to 10,000
@@ -167,6 +207,131 @@ public class JLBHOptions {
         return this;
     }
 
+    /**
+     * End each run after a length of time, rather than a number of iterations, so a run covers periodic effects
+     * such as GC cycles at any throughput. A run ends with the first iteration scheduled after the duration, so
+     * when accounting for co-ordinated omission every run offers the same number of iterations.
+     * The percentiles summarised are chosen by the number of samples in the first run.
+     * Not supported with pipelines or {@link JLBH#eventLoopHandler}.
+     *
+     * @param runDuration of each run, not including warmup
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions runDuration(@NotNull Duration runDuration) {
+        if (runDuration.isNegative() || runDuration.isZero())
+            throw new IllegalArgumentException("runDuration must be positive");
+        this.runDurationNs = runDuration.toNanos();
+        return this;
+    }
+
+    /**
+     * End each run early once the percentiles have been measured precisely enough, rather than always running every
+     * iteration. The end to end samples are split into batches, and a run ends once the 95% confidence interval of
+     * each percentile, estimated from the spread of its value in each batch, is within the tolerance of its value.
+     * There are at least {@value ConvergenceMonitor#MIN_BATCHES} batches, each large enough for 100 samples above
+     * the highest percentile. The precision achieved is reported for each run.
+     * Not supported with pipelines or {@link JLBH#eventLoopHandler}.
+     *
+     * @param tolerance   the half width of the confidence interval relative to the percentile, e.g. 0.01 for 1%
+     * @param percentiles to measure, each between 0 and 1 exclusive, e.g. 0.99
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions convergence(double tolerance, @NotNull double... percentiles) {
+        if (!(tolerance > 0))
+            throw new IllegalArgumentException("tolerance must be positive");
+        if (percentiles.length == 0)
+            throw new IllegalArgumentException("at least one percentile is required");
+        for (double percentile : percentiles)
+            if (!(percentile > 0 && percentile < 1))
+                throw new IllegalArgumentException("percentiles must be between 0 and 1 exclusive, was " + percentile);
+        this.convergenceTolerance = tolerance;
+        this.convergencePercentiles = percentiles.clone();
+        return this;
+    }
+
+    /**
+     * The percentiles reported for each run and summarised, rather than those chosen by the number of iterations,
+     * e.g. <code>percentiles(0.5, 0.95, 0.995)</code>. The worst is always reported as well.
+     *
+     * @param percentiles in ascending order, each between 0 and 1 exclusive
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions percentiles(@NotNull double... percentiles) {
+        if (percentiles.length == 0)
+            throw new IllegalArgumentException("at least one percentile is required");
+        for (int i = 0; i < percentiles.length; i++) {
+            if (!(percentiles[i] > 0 && percentiles[i] < 1))
+                throw new IllegalArgumentException("percentiles must be between 0 and 1 exclusive, was " + percentiles[i]);
+            if (i > 0 && percentiles[i] <= percentiles[i - 1])
+                throw new IllegalArgumentException("percentiles must be in ascending order");
+        }
+        this.percentiles = Arrays.copyOf(percentiles, percentiles.length + 1);
+        this.percentiles[percentiles.length] = 1.0;
+        return this;
+    }
+
+    /**
+     * Record the count, mean, standard deviation and minimum of each run, for end to end and each probe. They are
+     * reported for each run, summarised, and available from {@link JLBHResult.RunResult#statistics()}.
+     *
+     * @param statistics Defaults to false
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions statistics(boolean statistics) {
+        this.statistics = statistics;
+        return this;
+    }
+
+    /**
+     * Calculate the percentiles of end to end and each probe in parallel on the common fork/join pool at the end of
+     * each run, once there are enough probes to be worth it. This shortens the pause between runs with many probes
+     * and long runs, at the cost of using other cores for a moment.
+     *
+     * @param parallelPercentiles Defaults to false
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions parallelPercentiles(boolean parallelPercentiles) {
+        this.parallelPercentiles = parallelPercentiles;
+        return this;
+    }
+
+    /**
+     * Summarise each percentile across runs with robust statistics, the median, median absolute deviation,
+     * coefficient of variation and 95% confidence interval, and flag the runs which are outliers,
+     * see {@link RunToRunStatistics}.
+     *
+     * @param runToRunStatistics Defaults to false
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions runToRunStatistics(boolean runToRunStatistics) {
+        this.runToRunStatistics = runToRunStatistics;
+        return this;
+    }
+
+    /**
+     * Repeat the runs which are outliers once every run has completed, replacing their results, until no run is
+     * an outlier or the repeats have been used up. This implies {@link #runToRunStatistics(boolean)}.
+     * Not supported in continuous or closed loop mode, with pipelines or {@link JLBH#eventLoopHandler}.
+     *
+     * @param maxRepeats the most runs to repeat in total, defaults to 0
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions repeatOutlierRuns(int maxRepeats) {
+        if (maxRepeats < 0)
+            throw new IllegalArgumentException("maxRepeats must not be negative");
+        this.outlierRunRepeats = maxRepeats;
+        if (maxRepeats > 0)
+            this.runToRunStatistics = true;
+        return this;
+    }
+
     /**
      * The latency benchmark to be run.
      *
@@ -190,6 +355,212 @@ public class JLBHOptions {
         return this;
     }
 
+    /**
+     * End warmup once it has reached a steady state, rather than after a fixed number of iterations.
+     * The warmup samples are split into windows, and warmup ends after a window in which there was no JIT compilation
+     * and the 50th and 99th percentiles were within the tolerance of the previous window.
+     * Whether a steady state was reached before the maximum iterations is reported.
+     *
+     * @param windowIterations    number of samples in each window
+     * @param tolerance           relative change allowed in the percentiles between windows e.g. 0.1 for 10%
+     * @param maxWarmUpIterations to stop warming up after, even if a steady state was not reached
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions adaptiveWarmUp(int windowIterations, double tolerance, int maxWarmUpIterations) {
+        if (windowIterations <= 0)
+            throw new IllegalArgumentException("windowIterations must be positive");
+        this.adaptiveWarmUpWindow = windowIterations;
+        this.adaptiveWarmUpTolerance = tolerance;
+        this.warmUpIterations = maxWarmUpIterations;
+        return this;
+    }
+
+    /**
+     * Pace the warmup iterations the same way as the measured runs, rather than calling the task back to back.
+     * The warmup iterations are split evenly between the stages, each run at a fraction of the target throughput
+     * e.g. <code>pacedWarmUp(0.1, 0.5, 1.0)</code> for 10% then 50% then 100%. With no stages, all of warmup is at
+     * the target throughput.
+     *
+     * @param rateStages fractions of the target throughput for each stage of warmup
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions pacedWarmUp(@NotNull double... rateStages) {
+        for (double rate : rateStages)
+            if (!(rate > 0))
+                throw new IllegalArgumentException("rate stages must be positive, was " + rate);
+        this.warmUpRateStages = rateStages.length == 0 ? new double[]{1.0} : rateStages.clone();
+        return this;
+    }
+
+    /**
+     * Run another task alongside the main task, in the same measured window, so their interference is measured.
+     * It is paced on its own schedule at its own throughput, in the same time unit as the main task, and its end
+     * to end latencies and probes are reported and summarised under its name.
+     * Its results are available from {@link JLBHResult#pipeline(String)}.
+     * Only supported when accounting for co-ordinated omission, and not with {@link JLBH#eventLoopHandler}.
+     *
+     * @param name       of the pipeline, unique within this benchmark
+     * @param throughput target number of iterations of this task per <code>throughputTimeUnit</code>
+     * @param task       to run, it is passed its own JLBH in <code>init</code> to record samples and add probes with
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions addPipeline(@NotNull String name, int throughput, @NotNull JLBHTask task) {
+        if (throughput <= 0)
+            throw new IllegalArgumentException("throughput must be positive");
+        for (Pipeline pipeline : pipelines)
+            if (pipeline.name.equals(name))
+                throw new IllegalArgumentException("Duplicate pipeline " + name);
+        this.pipelines.add(new Pipeline(name, throughput, task));
+        return this;
+    }
+
+    /**
+     * The most iterations run by one call to an event loop handler, when it is called late and iterations are due.
+     * See {@link JLBH#eventLoopHandler(net.openhft.chronicle.core.threads.EventLoop, int)}
+     *
+     * @param maxIterationsPerAction Defaults to 64
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions maxIterationsPerAction(int maxIterationsPerAction) {
+        if (maxIterationsPerAction < 1)
+            throw new IllegalArgumentException("maxIterationsPerAction must be at least 1");
+        this.maxIterationsPerAction = maxIterationsPerAction;
+        return this;
+    }
+
+    /**
+     * Run each iteration of the task on its own virtual thread, so a blocking task can have many requests in flight.
+     * The task is still passed the intended start time, and <code>sample()</code> and probes may be called from any
+     * thread. The most iterations in flight, and the number of times a virtual thread was pinned to its carrier
+     * thread, are reported for each run.
+     * Requires Java 21+, and is not supported with {@link JLBH#eventLoopHandler}.
+     *
+     * @param maxInFlight the most iterations in flight, the next iteration waits for one to complete, or 0 for no limit
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions virtualThreads(int maxInFlight) {
+        if (maxInFlight < 0)
+            throw new IllegalArgumentException("maxInFlight must be 0 or more");
+        this.virtualThreadsMaxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Correlate out of order responses with their requests, so an asynchronous task doesn't need to keep the start time
+     * of each request. The task calls {@link JLBH#begin(long, long)} when it sends a request and
+     * {@link JLBH#complete(long)} when the response arrives, and the latency is sampled. Responses not received within
+     * the timeout are counted as lost, separately from the latency, and reported for each run.
+     * Requests must be begun by the thread running the task, but may be completed from any thread.
+     * Not supported with {@link #virtualThreads(int)}.
+     *
+     * @param capacity  the most requests outstanding at once
+     * @param timeoutNs how long after its start time a response is counted as lost
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions correlation(int capacity, long timeoutNs) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be at least 1");
+        if (timeoutNs <= 0)
+            throw new IllegalArgumentException("timeoutNs must be positive");
+        this.correlationCapacity = capacity;
+        this.correlationTimeoutNs = timeoutNs;
+        return this;
+    }
+
+    /**
+     * Run closed loop rather than at a fixed throughput, keeping a number of requests in flight and starting the next
+     * request each time one completes i.e. <code>sample()</code> is called, or a correlated response is lost.
+     * There is one run for each concurrency level, so this sets the number of runs, and the achieved throughput, mean
+     * latency and the concurrency implied by Little's law are reported for each run.
+     * A request's start time is when it was issued, so the throughput and coordinated omission options are ignored.
+     * Not supported with pipelines or {@link JLBH#eventLoopHandler}.
+     *
+     * @param concurrencyLevels the number of requests kept in flight in each run
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions closedLoop(int... concurrencyLevels) {
+        if (concurrencyLevels.length == 0)
+            throw new IllegalArgumentException("At least one concurrency level is required");
+        for (int concurrency : concurrencyLevels)
+            if (concurrency < 1)
+                throw new IllegalArgumentException("concurrency must be at least 1");
+        this.closedLoopConcurrency = concurrencyLevels.clone();
+        this.runs = concurrencyLevels.length;
+        return this;
+    }
+
+    /**
+     * Dispatch iterations in batches of consecutive start times, passed to {@link JLBHTask#runBatch(long[], int)},
+     * so the cost of pacing is spread across the batch at very high throughputs.
+     * When accounting for coordinated omission each iteration keeps its own start time at the target throughput, and
+     * the batch is dispatched at the start time of its last iteration, so the time waiting to be batched is included
+     * in the latency. Otherwise every iteration in the batch has the time the batch was dispatched.
+     * Not supported with pipelines, virtual threads, closed loop mode or {@link JLBH#eventLoopHandler}.
+     *
+     * @param batchSize Defaults to 1, no batching
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions batchSize(int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * The text results are written without allocating, so there is no garbage to collect during the next run.
+     * If set, the histogram percentiles of each run are also formatted by JLBH rather than by
+     * <code>Histogram.toMicrosFormat()</code>, in the same layout, with three decimal places under 1 us, otherwise two.
+     *
+     * @param allocationFreeReporting Defaults to false
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions allocationFreeReporting(boolean allocationFreeReporting) {
+        this.allocationFreeReporting = allocationFreeReporting;
+        return this;
+    }
+
+    /**
+     * At the end of each run the histograms are swapped for empty ones, and the percentiles are calculated, reported
+     * and the histograms reset by a reporter thread, so the next run starts straight away.
+     * The reporters must not assume they are called by the thread running the benchmark.
+     * Not supported with pipelines.
+     *
+     * @param deferredReporting Defaults to false
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions deferredReporting(boolean deferredReporting) {
+        this.deferredReporting = deferredReporting;
+        return this;
+    }
+
+    /**
+     * Run one continuous stream of iterations, paced from the end of the warm up, which is cut into runs by swapping
+     * the histograms only, so each run measures the steady state rather than the restart after the previous run.
+     * Samples still in flight at the end of a run are counted in the next run, except for the last run. Samples are
+     * recorded under a lock, so a run can be cut off between samples recorded by other threads.
+     * Implies {@link #deferredReporting(boolean)}. Not supported with pipelines, closed loop mode or
+     * {@link JLBH#eventLoopHandler}.
+     *
+     * @param continuous Defaults to false
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions continuous(boolean continuous) {
+        this.continuous = continuous;
+        return this;
+    }
+
     /**
      * Option to skip first run from being included in the variation statistics.
      *
@@ -224,12 +595,106 @@ public class JLBHOptions {
         return this;
     }
 
+    /**
+     * Add a reporter to receive the results as they are produced, in addition to the text written to the
+     * <code>PrintStream</code>. e.g. {@link net.openhft.chronicle.jlbh.util.JsonJLBHReporter}
+     *
+     * @param reporter to add
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions addReporter(@NotNull JLBHReporter reporter) {
+        this.reporters.add(reporter);
+        return this;
+    }
+
+    /**
+     * Serve the histograms of the current run in the OpenMetrics format on <code>http://localhost:{port}/metrics</code>
+     * for the duration of the benchmark, so long running benchmarks can be scraped as they progress.
+     *
+     * @param metricsPort to listen on, 0 to pick a free port or -1 for no metrics server, the default.
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions metricsPort(int metricsPort) {
+        this.metricsPort = metricsPort;
+        return this;
+    }
+
+    /**
+     * Record Java Flight Recorder events for each run, and for each end to end or probe sample over the threshold,
+     * so they can be lined up with GC, safepoint and other events in the same recording.
+     * The events are only recorded when a flight recording is running which enables them.
+     *
+     * @param outlierThresholdNs samples over this latency are recorded as events, or -1 for no JFR events, the default.
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions jfrOutlierThresholdNs(long outlierThresholdNs) {
+        this.jfrOutlierThresholdNs = outlierThresholdNs;
+        return this;
+    }
+
+    /**
+     * Start a profiler just before the first iteration of each run and stop it once all the samples for the run
+     * have been recorded, so warmup and reporting are not included in the profiles.
+     * e.g. {@link net.openhft.chronicle.jlbh.profiler.AsyncProfiler} or {@link net.openhft.chronicle.jlbh.profiler.PerfProfiler}
+     *
+     * @param profiler to use, or null for no profiling, the default.
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions profiler(@Nullable JLBHProfiler profiler) {
+        this.profiler = profiler;
+        return this;
+    }
+
+    /**
+     * Write a Java Flight Recording of each run to the directory provided.
+     *
+     * @param directory to write <code>jlbh-run{n}.jfr</code> to
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions profileRuns(@NotNull Path directory) {
+        return profiler(new JFRProfiler(directory));
+    }
+
+    /**
+     * Count cycles, instructions, L1 and LLC misses, branch misses and context switches for the benchmark thread
+     * over each run with Linux <code>perf stat</code>, reported per iteration.
+     * If <code>perf</code> is not available a warning is logged and no counts are reported.
+     *
+     * @param recordPerfCounters Defaults to false
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions recordPerfCounters(boolean recordPerfCounters) {
+        this.perfCounterEvents = recordPerfCounters ? PerfStat.DEFAULT_EVENTS.clone() : null;
+        return this;
+    }
+
+    /**
+     * Count these events for the benchmark thread over each run, see {@link #recordPerfCounters(boolean)}
+     *
+     * @param events as listed by <code>perf list</code> e.g. <code>cycles</code>, <code>dTLB-load-misses</code>
+     * @return Instance of the JLBHOptions to be used in the builder pattern.
+     */
+    @NotNull
+    public JLBHOptions perfCounterEvents(@NotNull String... events) {
+        this.perfCounterEvents = events.clone();
+        return this;
+    }
+
     @Override
     public String toString() {
         final StringBuffer sb = new StringBuffer("JLBHOptions{");
         sb.append("runs=").append(runs);
         sb.append(", iterations=").append(iterations);
         sb.append(", warmUpIterations=").append(warmUpIterations);
+        sb.append(", adaptiveWarmUpWindow=").append(adaptiveWarmUpWindow);
+        sb.append(", adaptiveWarmUpTolerance=").append(adaptiveWarmUpTolerance);
+        sb.append(", warmUpRateStages=").append(Arrays.toString(warmUpRateStages));
         sb.append(", pauseAfterWarmupMS=").append(pauseAfterWarmupMS);
         sb.append(", accountForCoordinatedOmission=").append(accountForCoordinatedOmission);
         sb.append(", skipFirstRun=").append(skipFirstRun);
@@ -242,10 +707,52 @@ public class JLBHOptions {
         sb.append(", timeout=").append(timeout);
         sb.append(", jlbhTask=").append(jlbhTask);
         sb.append(", acquireLock=").append(acquireLock);
+        sb.append(", reporters=").append(reporters);
+        sb.append(", metricsPort=").append(metricsPort);
+        sb.append(", jfrOutlierThresholdNs=").append(jfrOutlierThresholdNs);
+        sb.append(", profiler=").append(profiler);
+        sb.append(", perfCounterEvents=").append(Arrays.toString(perfCounterEvents));
+        sb.append(", pipelines=").append(pipelines);
+        sb.append(", maxIterationsPerAction=").append(maxIterationsPerAction);
+        sb.append(", virtualThreadsMaxInFlight=").append(virtualThreadsMaxInFlight);
+        sb.append(", correlationCapacity=").append(correlationCapacity);
+        sb.append(", correlationTimeoutNs=").append(correlationTimeoutNs);
+        sb.append(", closedLoopConcurrency=").append(Arrays.toString(closedLoopConcurrency));
+        sb.append(", batchSize=").append(batchSize);
+        sb.append(", allocationFreeReporting=").append(allocationFreeReporting);
+        sb.append(", deferredReporting=").append(deferredReporting);
+        sb.append(", continuous=").append(continuous);
+        sb.append(", runDurationNs=").append(runDurationNs);
+        sb.append(", convergenceTolerance=").append(convergenceTolerance);
+        sb.append(", convergencePercentiles=").append(Arrays.toString(convergencePercentiles));
+        sb.append(", percentiles=").append(Arrays.toString(percentiles));
+        sb.append(", statistics=").append(statistics);
+        sb.append(", runToRunStatistics=").append(runToRunStatistics);
+        sb.append(", outlierRunRepeats=").append(outlierRunRepeats);
+        sb.append(", parallelPercentiles=").append(parallelPercentiles);
         sb.append('}');
         return sb.toString();
     }
 
+    static final class Pipeline {
+        @NotNull
+        final String name;
+        final int throughput;
+        @NotNull
+        final JLBHTask task;
+
+        Pipeline(@NotNull String name, int throughput, @NotNull JLBHTask task) {
+            this.name = name;
+            this.throughput = throughput;
+            this.task = task;
+        }
+
+        @Override
+        public String toString() {
+            return name + "=" + throughput + ":" + task;
+        }
+    }
+
     enum SKIP_FIRST_RUN {
         NOT_SET, SKIP, NO_SKIP
     }
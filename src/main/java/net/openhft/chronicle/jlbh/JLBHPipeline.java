@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.PrintStream;
+
+/**
+ * An additional task run on its own schedule alongside the main task of a JLBH, see
+ * {@link JLBHOptions#addPipeline(String, int, JLBHTask)}
+ * <p>
+ * The task is given its own JLBH, so its end to end samples and probes are recorded separately. Its iterations are
+ * scaled by its throughput so it runs for the same measured window as the main task.
+ */
+final class JLBHPipeline {
+    @NotNull
+    final String name;
+    @NotNull
+    final JLBHTask task;
+    @NotNull
+    final JLBH jlbh;
+    final long iterations;
+    private final long latencyBetweenTasks;
+    private final LatencyDistributor latencyDistributor;
+    private long nextStartTimeNs;
+    private long remaining;
+
+    JLBHPipeline(@NotNull JLBHOptions mainOptions, @NotNull JLBHOptions.Pipeline pipeline, @NotNull PrintStream printStream) {
+        this.name = pipeline.name;
+        this.task = pipeline.task;
+        this.iterations = Math.max(1, mainOptions.iterations * pipeline.throughput / mainOptions.throughput);
+        this.latencyBetweenTasks = mainOptions.throughputTimeUnit.toNanos(1) / pipeline.throughput;
+        this.latencyDistributor = mainOptions.latencyDistributor;
+        final JLBHOptions options = new JLBHOptions()
+                .jlbhTask(pipeline.task)
+                .throughput(pipeline.throughput, mainOptions.throughputTimeUnit)
+                .latencyDistributor(mainOptions.latencyDistributor)
+                .accountForCoordinatedOmission(mainOptions.accountForCoordinatedOmission)
+                .warmUpIterations(mainOptions.warmUpIterations)
+                .iterations(iterations)
+                .runs(mainOptions.runs)
+                .recordOSJitter(false);
+        options.skipFirstRun = mainOptions.skipFirstRun;
+        this.jlbh = new JLBH(options, printStream, null);
+    }
+
+    void warmUp() {
+        for (int i = 0; i < jlbh.warmUpIterations() && !jlbh.isWarmedUp(); i++)
+            task.run(System.nanoTime());
+    }
+
+    void startOfRun(long startTimeNs) {
+        nextStartTimeNs = startTimeNs;
+        remaining = iterations;
+    }
+
+    /**
+     * Runs the next iteration if it is due
+     *
+     * @param nowNs the current time
+     * @return the time the next iteration is due, or Long.MAX_VALUE if there are no more this run
+     */
+    long runIfDue(long nowNs) {
+        if (remaining <= 0)
+            return Long.MAX_VALUE;
+        if (nowNs >= nextStartTimeNs) {
+            task.run(nextStartTimeNs);
+            nextStartTimeNs += latencyDistributor.apply(latencyBetweenTasks);
+            if (--remaining <= 0)
+                return Long.MAX_VALUE;
+        }
+        return nextStartTimeNs;
+    }
+
+    @Override
+    public String toString() {
+        return "JLBHPipeline{" +
+                "name=" + name +
+                ", iterations=" + iterations +
+                ", latencyBetweenTasks=" + latencyBetweenTasks +
+                '}';
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+
+/**
+ * A profiler which is started and stopped around each measured run, so the profile does not include the warmup
+ * or the reporting between runs.
+ * <p>
+ * Implementations are provided in <code>net.openhft.chronicle.jlbh.profiler</code>
+ *
+ * @see JLBHOptions#profiler(JLBHProfiler)
+ */
+public interface JLBHProfiler {
+
+    /**
+     * Called on the benchmark thread just before the first iteration of each run, i.e. after
+     * {@link JLBHTask#warmedUp()} for the first run
+     *
+     * @param run the run number, starting at 1
+     */
+    void start(int run);
+
+    /**
+     * Called on the benchmark thread once all the samples for the run have been recorded, before
+     * the results are reported and {@link JLBHTask#runComplete()} is called
+     *
+     * @param run the run number, starting at 1
+     * @return the profile written for this run, or null if there isn't one
+     */
+    @Nullable
+    Path stop(int run);
+}
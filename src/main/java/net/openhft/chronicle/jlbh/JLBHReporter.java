@@ -0,0 +1,245 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives the results of a benchmark as a stream of events, as they are produced.
+ * <p>
+ * The text written to the JLBH <code>PrintStream</code> is produced by one of these, additional reporters can be added with
+ * {@link JLBHOptions#addReporter(JLBHReporter)}.
+ * <p>
+ * Events are delivered in order, one at a time. With {@link JLBHOptions#deferredReporting(boolean)} the events of
+ * each run are delivered by a reporter thread while the next run is sampled, and the others by the thread running the
+ * benchmark, so a reporter must not assume which thread calls it. Histograms passed in are reset once the run is complete,
+ * so must not be retained after the callback returns. Run numbers start at 1.
+ */
+public interface JLBHReporter {
+
+    /**
+     * Called once the warmup is complete
+     *
+     * @param warmUpIterations number of warmup iterations
+     * @param durationMS       how long the warmup took in milliseconds
+     */
+    default void warmedUp(long warmUpIterations, long durationMS) {
+    }
+
+    /**
+     * Called after {@link #warmedUp(long, long)} if {@link JLBHOptions#adaptiveWarmUp(int, double, int)} is used
+     *
+     * @param steadyStateReached false if warmup stopped at the maximum iterations without reaching a steady state
+     */
+    default void warmUpSteadyState(boolean steadyStateReached) {
+    }
+
+    /**
+     * Called at the end of each run, before the probe results
+     *
+     * @param run                           the run number
+     * @param runTimeMS                     how long the run took in milliseconds
+     * @param latencyDistributor            the distributor used to space the iterations
+     * @param accountForCoordinatedOmission whether start times were corrected for co-ordinated omission
+     * @param throughput                    target number of iterations per <code>throughputTimeUnit</code>
+     * @param throughputTimeUnit            time unit of the target throughput
+     * @param latencyBetweenTasksNS         target interval between iterations in nanoseconds
+     */
+    default void runHeader(int run,
+                           long runTimeMS,
+                           @NotNull LatencyDistributor latencyDistributor,
+                           boolean accountForCoordinatedOmission,
+                           int throughput,
+                           @NotNull TimeUnit throughputTimeUnit,
+                           long latencyBetweenTasksNS) {
+    }
+
+    /**
+     * The end to end latencies for a run
+     *
+     * @param run         the run number
+     * @param histogram   of the end to end latencies in nanoseconds
+     * @param percentiles to report, as in the summary, the last is the worst
+     */
+    default void endToEnd(int run, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+    }
+
+    /**
+     * The latencies recorded by a probe for a run
+     *
+     * @param run         the run number
+     * @param name        the name of the probe
+     * @param histogram   of the probe latencies in nanoseconds
+     * @param percentiles to report, as in the summary, the last is the worst
+     */
+    default void probe(int run, @NotNull String name, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+    }
+
+    /**
+     * The count, mean, standard deviation and minimum of a run, only called if
+     * {@link JLBHOptions#statistics(boolean)} is enabled, for end to end and for each probe
+     *
+     * @param run        the run number
+     * @param name       the name of the probe, or "end to end"
+     * @param statistics of the samples in nanoseconds
+     */
+    default void statistics(int run, @NotNull String name, @NotNull RunStatistics statistics) {
+    }
+
+    /**
+     * Where the time went for the slowest messages of a run, for each {@link StageTracer}
+     *
+     * @param run        the run number
+     * @param name       the name of the tracer
+     * @param percentile the messages at or over this percentile from start to the end of the last stage are included
+     * @param messages   the number of messages included
+     * @param shares     the share of their time spent in each stage, in stage order, adding up to 1
+     */
+    default void stageBreakdown(int run, @NotNull String name, double percentile, long messages, @NotNull Map<String, Double> shares) {
+    }
+
+    /**
+     * The OS jitter recorded during a run, only called if OS jitter is being recorded.
+     *
+     * @param run         the run number
+     * @param histogram   of the OS jitter in nanoseconds
+     * @param percentiles to report, the last is the worst
+     */
+    default void osJitter(int run, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+    }
+
+    /**
+     * The hardware and software event counts for the benchmark thread over a run, only called if
+     * {@link JLBHOptions#recordPerfCounters(boolean)} is enabled and the events could be counted.
+     *
+     * @param run        the run number
+     * @param iterations the number of iterations in the run
+     * @param counts     total count for each event, in the order requested
+     */
+    default void perfCounters(int run, long iterations, @NotNull Map<String, Long> counts) {
+    }
+
+    /**
+     * Concurrency of a run, only called if {@link JLBHOptions#virtualThreads(int)} is used
+     *
+     * @param run         the run number
+     * @param maxInFlight the most iterations in flight at once
+     * @param pinnedCount the number of times a virtual thread was pinned to its carrier thread
+     */
+    default void virtualThreads(int run, int maxInFlight, long pinnedCount) {
+    }
+
+    /**
+     * Responses not received in time, only called if {@link JLBHOptions#correlation(int, long)} is used
+     *
+     * @param run  the run number
+     * @param lost the number of responses not received within the timeout, these are not included in the latencies
+     */
+    default void lostResponses(int run, long lost) {
+    }
+
+    /**
+     * The precision of the percentiles of a run, only called if {@link JLBHOptions#convergence(double, double...)} is
+     * used
+     *
+     * @param run                the run number
+     * @param samples            the number of samples in complete batches
+     * @param converged          whether the run ended because every percentile was within the tolerance
+     * @param relativeHalfWidths the half width of the 95% confidence interval of each percentile relative to its
+     *                           value, in the order requested, infinite if there were too few batches to estimate it
+     */
+    default void convergence(int run, long samples, boolean converged, @NotNull Map<Double, Double> relativeHalfWidths) {
+    }
+
+    /**
+     * The achieved throughput of a run, only called if {@link JLBHOptions#closedLoop(int...)} is used.
+     * By Little's law the concurrency should be the throughput multiplied by the mean latency, if it isn't some
+     * requests were not counted or waited outside the measured latency.
+     *
+     * @param run                   the run number
+     * @param concurrency           the number of requests kept in flight
+     * @param throughput            the requests completed per second
+     * @param meanLatencyNs         the mean latency in nanoseconds
+     * @param littlesLawConcurrency the throughput multiplied by the mean latency
+     */
+    default void closedLoop(int run, int concurrency, double throughput, double meanLatencyNs, double littlesLawConcurrency) {
+    }
+
+    /**
+     * The profile written for a run, only called if a {@link JLBHProfiler} is configured and it wrote a profile.
+     *
+     * @param run     the run number
+     * @param profile the file written by the profiler
+     */
+    default void profile(int run, @NotNull Path profile) {
+    }
+
+    /**
+     * Called once all the results for a run have been reported
+     *
+     * @param run the run number
+     */
+    default void runComplete(int run) {
+    }
+
+    /**
+     * Called after all runs have completed, once for end to end and once for each probe
+     *
+     * @param label   the name of the probe, or "end to end"
+     * @param runs    the number of runs requested
+     * @param summary the percentiles of each run and their variation
+     */
+    default void summary(@NotNull String label, int runs, @NotNull PercentileSummary summary) {
+    }
+
+    /**
+     * A run is an outlier, see {@link RunToRunStatistics}, only called if
+     * {@link JLBHOptions#runToRunStatistics(boolean)} is enabled, once every run has completed
+     *
+     * @param run      the run number
+     * @param repeated whether the run will be repeated and its results replaced, see
+     *                 {@link JLBHOptions#repeatOutlierRuns(int)}
+     */
+    default void outlierRun(int run, boolean repeated) {
+    }
+
+    /**
+     * Called after {@link #summary(String, int, PercentileSummary)} if {@link JLBHOptions#runToRunStatistics(boolean)}
+     * is enabled, with the robust statistics of each percentile across runs, see
+     * {@link PercentileSummary#forEachRunToRun(PercentileSummary.RunToRunConsumer)}
+     *
+     * @param label      the name of the probe, or "end to end"
+     * @param summary    the percentiles of each run
+     * @param runNumbers the run number of each run in the summary, as passed to {@link #outlierRun(int, boolean)},
+     *                   which differs from its position once outlier runs have been repeated
+     */
+    default void runToRunSummary(@NotNull String label, @NotNull PercentileSummary summary, @NotNull int[] runNumbers) {
+    }
+
+    /**
+     * Called once the benchmark is complete
+     */
+    default void complete() {
+    }
+}
@@ -21,7 +21,10 @@ package net.openhft.chronicle.jlbh;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -39,6 +42,49 @@ public interface JLBHResult {
 
     Optional<ProbeResult> osJitter();
 
+    /**
+     * @return true if the percentiles were set by {@link JLBHOptions#percentiles(double...)}, rather than chosen by
+     * the number of samples
+     */
+    default boolean customPercentiles() {
+        return false;
+    }
+
+    /**
+     * @return the profile written for each run in order, or an empty list if no {@link JLBHProfiler} was configured
+     */
+    @NotNull
+    default List<Path> profiles() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the count of each event per iteration of the benchmark thread for each run in order, or an empty list
+     * if {@link JLBHOptions#recordPerfCounters(boolean)} was not enabled or perf was not available
+     */
+    @NotNull
+    default List<Map<String, Double>> perfCountersPerIteration() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @param pipelineName as passed to {@link JLBHOptions#addPipeline(String, int, JLBHTask)}
+     * @return the end to end and probe results of that pipeline
+     */
+    @NotNull
+    default Optional<JLBHResult> pipeline(String pipelineName) {
+        return Optional.empty();
+    }
+
+    /**
+     * @return the names of the pipelines added by {@link JLBHOptions#addPipeline(String, int, JLBHTask)}, or an
+     * empty set if there are none
+     */
+    @NotNull
+    default Set<String> pipelineNames() {
+        return Collections.emptySet();
+    }
+
     interface ProbeResult {
 
         @NotNull
@@ -71,16 +117,61 @@ public interface JLBHResult {
         @NotNull
         Duration getWorst();
 
+        /**
+         * @return every percentile of the run in ascending order, keyed by the fraction e.g. 0.99, including those
+         * set by {@link JLBHOptions#percentiles(double...)} and 1.0 for the worst
+         */
+        @NotNull
+        default Map<Double, Duration> percentileValues() {
+            final Map<Double, Duration> values = new LinkedHashMap<>();
+            percentiles().forEach((percentile, duration) -> values.put(percentile.fraction(), duration));
+            return Collections.unmodifiableMap(values);
+        }
+
+        /**
+         * @return the count, mean, standard deviation and minimum of the run, if
+         * {@link JLBHOptions#statistics(boolean)} is enabled
+         */
+        @NotNull
+        default Optional<RunStatistics> statistics() {
+            return Optional.empty();
+        }
+
         enum Percentile {
-            PERCENTILE_50TH,
-            PERCENTILE_90TH,
-            PERCENTILE_99TH,
-            PERCENTILE_99_7TH,
-            PERCENTILE_99_9TH,
-            PERCENTILE_99_97TH,
-            PERCENTILE_99_99TH,
-            PERCENTILE_99_999TH,
-            WORST
+            PERCENTILE_50TH(0.5),
+            PERCENTILE_90TH(0.9),
+            PERCENTILE_99TH(0.99),
+            PERCENTILE_99_7TH(0.997),
+            PERCENTILE_99_9TH(0.999),
+            PERCENTILE_99_97TH(0.9997),
+            PERCENTILE_99_99TH(0.9999),
+            PERCENTILE_99_999TH(0.99999),
+            WORST(1.0);
+
+            private final double fraction;
+
+            Percentile(double fraction) {
+                this.fraction = fraction;
+            }
+
+            /**
+             * @return the percentile as a fraction, e.g. 0.99 for the 99th
+             */
+            public double fraction() {
+                return fraction;
+            }
+
+            /**
+             * @param fraction e.g. 0.99
+             * @return the percentile, if it is one of these
+             */
+            @NotNull
+            public static Optional<Percentile> of(double fraction) {
+                for (Percentile percentile : values())
+                    if (percentile.fraction == fraction)
+                        return Optional.of(percentile);
+                return Optional.empty();
+            }
         }
     }
 }
@@ -41,6 +41,20 @@ public interface JLBHTask {
      */
     void run(long startTimeNS);
 
+    /**
+     * This method is called for each batch of iterations, if {@link JLBHOptions#batchSize(int)} is more than 1,
+     * so the task can send them together. Each iteration has its own start time, and the batch is dispatched once
+     * the last of them is due, so none is later than the time this method is called. The array is reused, so the start times must be copied if they are needed later.
+     * By default each iteration is passed to {@link #run(long)}.
+     *
+     * @param startTimesNS The time that should be used as the start time for each sample in the batch.
+     * @param count        The number of iterations in the batch.
+     */
+    default void runBatch(long[] startTimesNS, int count) {
+        for (int i = 0; i < count; i++)
+            run(startTimesNS[i]);
+    }
+
     /**
      * Notify that warmup phase is over
      */
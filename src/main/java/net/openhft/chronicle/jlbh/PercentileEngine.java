@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Calculates the percentiles of end to end and every probe at the end of a run. Each histogram's percentiles are
+ * calculated in one pass over its buckets by <code>Histogram.getPercentiles</code>, and with
+ * {@link JLBHOptions#parallelPercentiles(boolean)} the histograms are spread across a fork/join pool.
+ */
+final class PercentileEngine {
+    // below this the histograms are calculated quicker on the calling thread
+    static final int PARALLEL_THRESHOLD = 4;
+
+    @Nullable
+    private final ForkJoinPool pool;
+
+    /**
+     * @param pool to calculate the histograms in parallel, or null to calculate them on the calling thread
+     */
+    PercentileEngine(@Nullable ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param histograms  to calculate
+     * @param percentiles to calculate, or null for those chosen by the number of samples in each histogram
+     * @return the percentiles of each histogram, in the same order
+     */
+    @NotNull
+    double[][] percentiles(@NotNull Histogram[] histograms, @Nullable double[] percentiles) {
+        final double[][] results = new double[histograms.length][];
+        if (pool == null || histograms.length < PARALLEL_THRESHOLD)
+            calculate(histograms, percentiles, results, 0, histograms.length);
+        else
+            pool.invoke(new PercentilesAction(histograms, percentiles, results, 0, histograms.length));
+        return results;
+    }
+
+    static void calculate(@NotNull Histogram[] histograms, @Nullable double[] percentiles, @NotNull double[][] results,
+                          int from, int to) {
+        for (int i = from; i < to; i++)
+            results[i] = percentiles == null ? histograms[i].getPercentiles() : histograms[i].getPercentiles(percentiles);
+    }
+
+    private static final class PercentilesAction extends RecursiveAction {
+        private static final long serialVersionUID = 0L;
+        // a histogram takes microseconds, so splitting further costs more than it saves
+        private static final int MIN_HISTOGRAMS = 2;
+
+        private final Histogram[] histograms;
+        @Nullable
+        private final double[] percentiles;
+        private final double[][] results;
+        private final int from;
+        private final int to;
+
+        PercentilesAction(Histogram[] histograms, @Nullable double[] percentiles, double[][] results, int from, int to) {
+            this.histograms = histograms;
+            this.percentiles = percentiles;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= MIN_HISTOGRAMS) {
+                calculate(histograms, percentiles, results, from, to);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new PercentilesAction(histograms, percentiles, results, from, middle),
+                    new PercentilesAction(histograms, percentiles, results, middle, to));
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package net.openhft.chronicle.jlbh;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 
@@ -29,9 +30,13 @@ import java.util.List;
  */
 public final class PercentileSummary {
 
+    private static final String[] STATISTICS = {"mean", "stddev", "min", "count"};
+
     private final boolean skipFirst;
     private final List<double[]> percentileRuns;
     private final double[] percentiles;
+    @Nullable
+    private final List<RunStatistics> statisticsRuns;
 
     /**
      * Constructor
@@ -43,9 +48,25 @@ public final class PercentileSummary {
     public PercentileSummary(boolean skipFirst,
                              @NotNull List<double[]> percentileRuns,
                              double[] percentiles) {
+        this(skipFirst, percentileRuns, percentiles, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param skipFirst      Whether to skip the value from the first run when calculating variance
+     * @param percentileRuns The values for the individual runs
+     * @param percentiles    The percentiles to render (some may not be present in some runs)
+     * @param statisticsRuns The statistics of the individual runs, or null if not recorded
+     */
+    public PercentileSummary(boolean skipFirst,
+                             @NotNull List<double[]> percentileRuns,
+                             double[] percentiles,
+                             @Nullable List<RunStatistics> statisticsRuns) {
         this.skipFirst = skipFirst;
         this.percentileRuns = percentileRuns;
         this.percentiles = percentiles;
+        this.statisticsRuns = statisticsRuns;
     }
 
     /**
@@ -68,28 +89,76 @@ public final class PercentileSummary {
         });
     }
 
+    /**
+     * @return The number of runs summarised
+     */
+    public int runs() {
+        return percentileRuns.size();
+    }
+
     /**
      * Calculate the variance between runs for a percentile
      *
      * @param percentileIndex The index of the percentile for which to calculate the variance
-     * @return The variance for that percentile
+     * @return The variance for that percentile, or 0 if every run has the same value or no run has a value
      */
     public double calculateVariance(int percentileIndex) {
-        double maxValue = Double.MIN_VALUE;
-        double minValue = Double.MAX_VALUE;
-        for (int j = 0; j < percentileRuns.size(); j++) {
-            double cellValue = getPercentileForRun(percentileIndex, j);
-            if ((skipFirst && j == 0) || cellValue == Double.POSITIVE_INFINITY) {
-                continue;
-            }
-            if (cellValue > maxValue) {
-                maxValue = cellValue;
-            }
-            if (cellValue < minValue) {
-                minValue = cellValue;
+        final double[] values = new double[percentileRuns.size()];
+        for (int j = 0; j < values.length; j++)
+            values[j] = getPercentileForRun(percentileIndex, j);
+        return variation(values);
+    }
+
+    /**
+     * Calculate robust statistics of a percentile across runs, the median, MAD, coefficient of variation and
+     * confidence interval, and which runs are outliers
+     *
+     * @param percentileIndex The index of the percentile
+     * @return The statistics of the runs with a value for that percentile, in microseconds
+     */
+    @NotNull
+    public RunToRunStatistics runToRunStatistics(int percentileIndex) {
+        final double[] values = new double[percentileRuns.size()];
+        for (int j = 0; j < values.length; j++)
+            values[j] = getPercentileForRun(percentileIndex, j);
+        return RunToRunStatistics.of(values, skipFirst);
+    }
+
+    /**
+     * Execute a callback with the run to run statistics of every percentile row that contains at least one value
+     *
+     * @param consumer A {@link RunToRunConsumer} to process the rows
+     */
+    public void forEachRunToRun(RunToRunConsumer consumer) {
+        for (int i = 0; i < percentiles.length; i++) {
+            final RunToRunStatistics statistics = runToRunStatistics(i);
+            if (statistics.count() > 0)
+                consumer.consume(percentiles[i], statistics);
+        }
+    }
+
+    /**
+     * The runs which are an outlier for any percentile but the worst, which is a single sample so expected to vary.
+     * These fail the stability criterion of {@link RunToRunStatistics}.
+     *
+     * @return The indexes of the outlier runs, in ascending order
+     */
+    @NotNull
+    public int[] outlierRuns() {
+        final boolean[] outlier = new boolean[percentileRuns.size()];
+        int count = 0;
+        for (int i = 0; i < percentiles.length - 1; i++) {
+            for (int run : runToRunStatistics(i).outlierRuns()) {
+                if (!outlier[run])
+                    count++;
+                outlier[run] = true;
             }
         }
-        return 100 * (maxValue - minValue) / (maxValue + minValue / 2);
+        final int[] runs = new int[count];
+        for (int j = 0, k = 0; j < outlier.length; j++)
+            if (outlier[j])
+                runs[k++] = j;
+        return runs;
     }
 
     /**
@@ -116,18 +185,82 @@ public final class PercentileSummary {
      * @param consumer A {@link RowConsumer} to process the rows
      */
     public void forEachRow(RowConsumer consumer) {
-        for (int i = 0; i < percentiles.length; i++) {
-            final double[] rowValues = new double[percentileRuns.size()];
-            boolean rowHasValues = false;
-            for (int j = 0; j < percentileRuns.size(); j++) {
-                final double percentileForRun = getPercentileForRun(i, j);
-                rowValues[j] = percentileForRun;
-                rowHasValues = rowHasValues || !Double.isInfinite(percentileForRun);
-            }
-            if (rowHasValues) {
-                consumer.consume(percentiles[i], rowValues, calculateVariance(i));
-            }
+        for (int i = 0; i < percentiles.length; i++)
+            forRow(i, new double[percentileRuns.size()], consumer);
+    }
+
+    /**
+     * Execute a callback for every percentile row that contains at least one value, without allocating
+     *
+     * @param rowValues A buffer for the values of each row, with one element per run, which is reused for every row
+     * @param consumer  A {@link RowConsumer} to process the rows
+     */
+    public void forEachRow(double[] rowValues, RowConsumer consumer) {
+        if (rowValues.length != percentileRuns.size())
+            throw new IllegalArgumentException("rowValues must have one element per run");
+        for (int i = 0; i < percentiles.length; i++)
+            forRow(i, rowValues, consumer);
+    }
+
+    private void forRow(int i, double[] rowValues, RowConsumer consumer) {
+        boolean rowHasValues = false;
+        for (int j = 0; j < percentileRuns.size(); j++) {
+            final double percentileForRun = getPercentileForRun(i, j);
+            rowValues[j] = percentileForRun;
+            rowHasValues = rowHasValues || !Double.isInfinite(percentileForRun);
+        }
+        if (rowHasValues) {
+            consumer.consume(percentiles[i], rowValues, variation(rowValues));
+        }
+    }
+
+    /**
+     * Execute a callback for the mean, standard deviation and minimum in microseconds, and the count, if statistics
+     * were recorded, without allocating
+     *
+     * @param rowValues A buffer for the values of each row, with one element per run, which is reused for every row
+     * @param consumer  A {@link StatisticConsumer} to process the rows
+     */
+    public void forEachStatistic(double[] rowValues, StatisticConsumer consumer) {
+        if (rowValues.length != percentileRuns.size())
+            throw new IllegalArgumentException("rowValues must have one element per run");
+        if (statisticsRuns == null || statisticsRuns.size() != percentileRuns.size())
+            return;
+        for (int s = 0; s < STATISTICS.length; s++) {
+            for (int j = 0; j < rowValues.length; j++)
+                rowValues[j] = statistic(s, statisticsRuns.get(j));
+            consumer.consume(STATISTICS[s], rowValues, variation(rowValues));
+        }
+    }
+
+    private static double statistic(int statistic, @NotNull RunStatistics statistics) {
+        switch (statistic) {
+            case 0:
+                return statistics.meanNs() / 1e3;
+            case 1:
+                return statistics.stddevNs() / 1e3;
+            case 2:
+                return statistics.minNs() / 1e3;
+            default:
+                return statistics.count();
+        }
+    }
+
+    /**
+     * The spread of the values of each run, skipping the first run if asked to, and any run without a value, which is
+     * infinite for a percentile with too few samples or NaN for a statistic
+     */
+    private double variation(double[] values) {
+        double maxValue = Double.NEGATIVE_INFINITY;
+        double minValue = Double.POSITIVE_INFINITY;
+        for (int j = skipFirst ? 1 : 0; j < values.length; j++) {
+            if (Double.isInfinite(values[j]) || Double.isNaN(values[j]))
+                continue;
+            maxValue = Math.max(maxValue, values[j]);
+            minValue = Math.min(minValue, values[j]);
         }
+        // no values, or the same value in every run, including a row of zeros, has no variation
+        return maxValue > minValue ? 100 * (maxValue - minValue) / (maxValue + minValue / 2) : 0;
     }
 
     /**
@@ -144,4 +277,33 @@ public final class PercentileSummary {
          */
         void consume(double percentile, double[] values, double variance);
     }
+
+    /**
+     * Consumer of the run to run statistics of each percentile
+     */
+    public interface RunToRunConsumer {
+
+        /**
+         * Consume the run to run statistics of a percentile
+         *
+         * @param percentile The percentile
+         * @param statistics The statistics of its value in each run
+         */
+        void consume(double percentile, @NotNull RunToRunStatistics statistics);
+    }
+
+    /**
+     * Consumer of the statistics rows of the summary
+     */
+    public interface StatisticConsumer {
+
+        /**
+         * Consume a row of the summary
+         *
+         * @param statistic The name of the statistic, mean, stddev, min or count
+         * @param values    The values for the respective runs
+         * @param variation The variation of the values
+         */
+        void consume(String statistic, double[] values, double variation);
+    }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.affinity.Affinity;
+import net.openhft.chronicle.core.Jvm;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts hardware and software events for the benchmark thread over a run using Linux <code>perf stat</code>.
+ * <p>
+ * <code>perf stat -t {tid}</code> counts the thread for as long as its workload runs, so <code>cat</code> is used
+ * as the workload and closing its input ends the count.
+ */
+final class PerfStat {
+    static final String[] DEFAULT_EVENTS = {
+            "cycles", "instructions", "L1-dcache-load-misses", "LLC-load-misses", "branch-misses", "context-switches"};
+
+    @NotNull
+    private final String[] events;
+    @Nullable
+    private Process process;
+    @Nullable
+    private File output;
+    private boolean disabled;
+
+    PerfStat(@NotNull String[] events) {
+        this.events = events;
+    }
+
+    /**
+     * Parses the output of <code>perf stat -x,</code> i.e. <code>value,unit,event,...</code> per line.
+     * Events which were not counted or supported are left out.
+     */
+    @NotNull
+    static Map<String, Long> parse(@NotNull List<String> lines) {
+        final Map<String, Long> counts = new LinkedHashMap<>();
+        for (String line : lines) {
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            final String[] fields = line.split(",", -1);
+            if (fields.length < 3)
+                continue;
+            final String event = fields[2].trim();
+            try {
+                counts.put(event.endsWith(":u") ? event.substring(0, event.length() - 2) : event,
+                        (long) Double.parseDouble(fields[0].trim()));
+            } catch (NumberFormatException e) {
+                // <not counted> or <not supported>
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Start counting for the current thread
+     */
+    void start() {
+        if (disabled)
+            return;
+        try {
+            output = File.createTempFile("jlbh-perf-stat", ".csv");
+            process = new ProcessBuilder("perf", "stat", "-x,",
+                    "-e", String.join(",", events),
+                    "-t", Integer.toString(Affinity.getThreadId()),
+                    "-o", output.getAbsolutePath(),
+                    "cat")
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+        } catch (IOException e) {
+            Jvm.warn().on(PerfStat.class, "Unable to run perf stat, no performance counters will be recorded", e);
+            disabled = true;
+            deleteOutput();
+        }
+    }
+
+    /**
+     * @return the counts since {@link #start()}, empty if perf stat could not be run
+     */
+    @NotNull
+    Map<String, Long> stop() {
+        if (process == null)
+            return Collections.emptyMap();
+        try {
+            process.getOutputStream().close();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return Collections.emptyMap();
+            }
+            final Map<String, Long> counts = parse(Files.readAllLines(output.toPath(), StandardCharsets.UTF_8));
+            if (counts.isEmpty() && process.exitValue() != 0) {
+                Jvm.warn().on(PerfStat.class, "perf stat exited with " + process.exitValue() + ", no performance counters will be recorded");
+                disabled = true;
+            }
+            return counts;
+        } catch (IOException e) {
+            Jvm.warn().on(PerfStat.class, "Unable to read perf stat output", e);
+            return Collections.emptyMap();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyMap();
+        } finally {
+            process = null;
+            deleteOutput();
+        }
+    }
+
+    private void deleteOutput() {
+        if (output != null) {
+            //noinspection ResultOfMethodCallIgnored
+            output.delete();
+            output = null;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.UnsafeMemory;
+
+/**
+ * An off heap, open addressed table of outstanding request ids to their start times, so responses can complete
+ * out of order without the task keeping a map of its own.
+ * <p>
+ * Requests are begun by a single thread, the thread running the task, but may be completed or expired by any thread.
+ * Each entry is an id then a start time. A slot is claimed by writing the start time then an ordered write of the id,
+ * and released by a compare and swap of the id to a tombstone, so only one of completion or expiry wins.
+ * Tombstones are cleared back to empty slots incrementally by the beginning thread.
+ */
+final class RequestCorrelator {
+    static final long EMPTY = Long.MIN_VALUE;
+    static final long TOMBSTONE = Long.MIN_VALUE + 1;
+    static final long NOT_FOUND = Long.MIN_VALUE;
+    private static final int ENTRY_SIZE = 16;
+    // slots checked for timeouts each time a request is begun
+    private static final int SWEEP_SLOTS = 2;
+
+    private final UnsafeMemory memory = OS.memory();
+    private final int capacity;
+    private final long timeoutNs;
+    private final long sizeInBytes;
+    private long address;
+    private int sweep;
+
+    /**
+     * @param capacity  the most requests outstanding at once, rounded up to a power of two
+     * @param timeoutNs how long after its start time a request is treated as lost
+     */
+    RequestCorrelator(int capacity, long timeoutNs) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        if (timeoutNs <= 0)
+            throw new IllegalArgumentException("timeoutNs must be positive");
+        this.capacity = Integer.highestOneBit(capacity * 2 - 1);
+        this.timeoutNs = timeoutNs;
+        this.sizeInBytes = (long) this.capacity * ENTRY_SIZE;
+        this.address = memory.allocate(sizeInBytes);
+        for (int i = 0; i < this.capacity; i++)
+            memory.writeLong(keyAddress(i), EMPTY);
+        // publish the empty table to the threads completing requests
+        memory.writeOrderedLong(keyAddress(0), EMPTY);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Records the start time of a request, and checks a few other slots for requests which have timed out.
+     * Only called by the thread running the task.
+     *
+     * @param id      unique while outstanding, {@link #EMPTY} and {@link #TOMBSTONE} are reserved
+     * @param startNs the start time to measure the latency from
+     * @return the number of requests expired
+     * @throws IllegalStateException if the table is full
+     */
+    int begin(long id, long startNs) {
+        if (id == EMPTY || id == TOMBSTONE)
+            throw new IllegalArgumentException("id " + id + " is reserved");
+        final int expired = sweep(startNs);
+        final int mask = capacity - 1;
+        int slot = hash(id) & mask;
+        for (int i = 0; i < capacity; i++, slot = (slot + 1) & mask) {
+            final long keyAddress = keyAddress(slot);
+            final long key = memory.readVolatileLong(keyAddress);
+            if (key == EMPTY || key == TOMBSTONE) {
+                memory.writeLong(keyAddress + 8, startNs);
+                memory.writeOrderedLong(keyAddress, id);
+                return expired;
+            }
+        }
+        throw new IllegalStateException("More than " + capacity + " requests outstanding");
+    }
+
+    /**
+     * @param id of the request
+     * @return the start time of the request, or {@link #NOT_FOUND} if it was not outstanding e.g. it had already expired
+     */
+    long complete(long id) {
+        final int mask = capacity - 1;
+        int slot = hash(id) & mask;
+        for (int i = 0; i < capacity; i++, slot = (slot + 1) & mask) {
+            final long keyAddress = keyAddress(slot);
+            final long key = memory.readVolatileLong(keyAddress);
+            if (key == EMPTY)
+                return NOT_FOUND;
+            if (key == id) {
+                final long startNs = memory.readLong(keyAddress + 8);
+                return memory.compareAndSwapLong(keyAddress, id, TOMBSTONE) ? startNs : NOT_FOUND;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Expires every request outstanding for longer than the timeout. May be called from any thread.
+     *
+     * @param nowNs the current time
+     * @return the number of requests expired
+     */
+    int expire(long nowNs) {
+        int expired = 0;
+        for (int i = 0; i < capacity; i++)
+            if (expire(keyAddress(i), nowNs))
+                expired++;
+        return expired;
+    }
+
+    // walks backwards, so a run of tombstones before an empty slot can be cleared in one pass
+    private int sweep(long nowNs) {
+        final int mask = capacity - 1;
+        int expired = 0;
+        for (int i = 0; i < SWEEP_SLOTS; i++) {
+            final int slot = sweep = (sweep - 1) & mask;
+            final long keyAddress = keyAddress(slot);
+            if (expire(keyAddress, nowNs))
+                expired++;
+            // a lookup stops at the next empty slot anyway, so this tombstone is no longer needed
+            if (memory.readVolatileLong(keyAddress) == TOMBSTONE
+                    && memory.readVolatileLong(keyAddress(slot + 1 & mask)) == EMPTY)
+                memory.writeOrderedLong(keyAddress, EMPTY);
+        }
+        return expired;
+    }
+
+    private boolean expire(long keyAddress, long nowNs) {
+        final long key = memory.readVolatileLong(keyAddress);
+        if (key == EMPTY || key == TOMBSTONE)
+            return false;
+        final long startNs = memory.readLong(keyAddress + 8);
+        return nowNs - startNs > timeoutNs
+                && memory.compareAndSwapLong(keyAddress, key, TOMBSTONE);
+    }
+
+    private long keyAddress(int slot) {
+        return address + (long) slot * ENTRY_SIZE;
+    }
+
+    private static int hash(long id) {
+        final long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    void close() {
+        if (address != 0) {
+            memory.freeMemory(address, sizeInBytes);
+            address = 0;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * What was measured in a run, taken at the end of the run so it can be reported, possibly by another thread while the
+ * next run is measured, see {@link JLBHOptions#deferredReporting(boolean)}.
+ * <p>
+ * The histograms are those sampled during the run, which are no longer sampled until they have been reported and reset.
+ */
+final class RunReport {
+    // the index of the run, from 0
+    final int run;
+    final long runTimeMS;
+    @NotNull
+    final Histogram endToEnd;
+    @NotNull
+    final Map<String, Histogram> probes;
+    @NotNull
+    final Histogram osJitter;
+    @NotNull
+    final Map<String, Long> perfCounts;
+    final long iterations;
+    final int maxInFlight;
+    final long pinnedCount;
+    final long lost;
+    final double throughput;
+    final double meanLatencyNs;
+    final boolean converged;
+    final long convergenceSamples;
+    // null unless converging
+    @Nullable
+    final Map<Double, Double> relativeHalfWidths;
+    // null unless recording statistics
+    @Nullable
+    final RunStatistics endToEndStatistics;
+    @NotNull
+    final Map<String, RunStatistics> probeStatistics;
+    @Nullable
+    final Path profile;
+
+    RunReport(int run, long runTimeMS, @NotNull Histogram endToEnd, @NotNull Map<String, Histogram> probes,
+              @NotNull Histogram osJitter, @NotNull Map<String, Long> perfCounts, long iterations, int maxInFlight,
+              long pinnedCount, long lost, double throughput, double meanLatencyNs, boolean converged,
+              long convergenceSamples, @Nullable Map<Double, Double> relativeHalfWidths,
+              @Nullable RunStatistics endToEndStatistics, @NotNull Map<String, RunStatistics> probeStatistics,
+              @Nullable Path profile) {
+        this.run = run;
+        this.runTimeMS = runTimeMS;
+        this.endToEnd = endToEnd;
+        this.probes = unmodifiableMap(probes);
+        this.osJitter = osJitter;
+        this.perfCounts = unmodifiableMap(perfCounts);
+        this.iterations = iterations;
+        this.maxInFlight = maxInFlight;
+        this.pinnedCount = pinnedCount;
+        this.lost = lost;
+        this.throughput = throughput;
+        this.meanLatencyNs = meanLatencyNs;
+        this.converged = converged;
+        this.convergenceSamples = convergenceSamples;
+        this.relativeHalfWidths = relativeHalfWidths == null ? null : unmodifiableMap(relativeHalfWidths);
+        this.endToEndStatistics = endToEndStatistics;
+        this.probeStatistics = unmodifiableMap(probeStatistics);
+        this.profile = profile;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The count, mean, standard deviation and minimum of the samples of a run, recorded if
+ * {@link JLBHOptions#statistics(boolean)} is enabled. The times are in nanoseconds.
+ */
+public final class RunStatistics {
+    private final long count;
+    private final double meanNs;
+    private final double stddevNs;
+    private final double minNs;
+
+    public RunStatistics(long count, double meanNs, double stddevNs, double minNs) {
+        this.count = count;
+        this.meanNs = meanNs;
+        this.stddevNs = stddevNs;
+        this.minNs = minNs;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return the mean, or NaN if there were no samples
+     */
+    public double meanNs() {
+        return meanNs;
+    }
+
+    /**
+     * @return the sample standard deviation, or 0 if there were fewer than two samples
+     */
+    public double stddevNs() {
+        return stddevNs;
+    }
+
+    /**
+     * @return the minimum, or NaN if there were no samples
+     */
+    public double minNs() {
+        return minNs;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "RunStatistics{" +
+                "count=" + count +
+                ", meanNs=" + meanNs +
+                ", stddevNs=" + stddevNs +
+                ", minNs=" + minNs +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RunStatistics that = (RunStatistics) o;
+
+        return count == that.count
+                && Double.compare(that.meanNs, meanNs) == 0
+                && Double.compare(that.stddevNs, stddevNs) == 0
+                && Double.compare(that.minNs, minNs) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(count);
+        result = 31 * result + Double.hashCode(meanNs);
+        result = 31 * result + Double.hashCode(stddevNs);
+        result = 31 * result + Double.hashCode(minNs);
+        return result;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Robust statistics of one percentile across runs, used to tell a single noisy run from general instability.
+ * <p>
+ * A run is an outlier if its modified z-score, <code>0.6745 * (value - median) / MAD</code>, is more than
+ * {@value #OUTLIER_Z_SCORE} (Iglewicz and Hoaglin) and it differs from the median by more than
+ * {@value #MIN_OUTLIER_DEVIATION} of the median, so runs within the resolution of the histogram are not flagged.
+ * When more than half the runs are identical the MAD is zero, so any run differing by more than that is an outlier.
+ * Outliers are only detected with at least {@value #MIN_RUNS} runs.
+ */
+public final class RunToRunStatistics {
+    static final double OUTLIER_Z_SCORE = 3.5;
+    static final double MIN_OUTLIER_DEVIATION = 0.05;
+    static final int MIN_RUNS = 3;
+    private static final int[] NO_RUNS = {};
+
+    private final int count;
+    private final double median;
+    private final double medianAbsoluteDeviation;
+    private final double mean;
+    private final double stddev;
+    private final double confidenceLow;
+    private final double confidenceHigh;
+    private final int[] outlierRuns;
+
+    private RunToRunStatistics(int count, double median, double medianAbsoluteDeviation, double mean, double stddev,
+                               double confidenceLow, double confidenceHigh, int[] outlierRuns) {
+        this.count = count;
+        this.median = median;
+        this.medianAbsoluteDeviation = medianAbsoluteDeviation;
+        this.mean = mean;
+        this.stddev = stddev;
+        this.confidenceLow = confidenceLow;
+        this.confidenceHigh = confidenceHigh;
+        this.outlierRuns = outlierRuns;
+    }
+
+    /**
+     * @param values    of each run, infinite or NaN if the run has no value
+     * @param skipFirst whether to ignore the first run
+     * @return the statistics of the values present
+     */
+    @NotNull
+    public static RunToRunStatistics of(@NotNull double[] values, boolean skipFirst) {
+        final int[] runs = new int[values.length];
+        int count = 0;
+        for (int j = skipFirst ? 1 : 0; j < values.length; j++)
+            if (Double.isFinite(values[j]))
+                runs[count++] = j;
+        if (count == 0)
+            return new RunToRunStatistics(0, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, NO_RUNS);
+
+        final double[] sorted = new double[count];
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sorted[i] = values[runs[i]];
+            sum += sorted[i];
+        }
+        final double mean = sum / count;
+        Arrays.sort(sorted);
+        final double median = median(sorted);
+
+        double squares = 0;
+        for (int i = 0; i < count; i++) {
+            final double deviation = sorted[i] - mean;
+            squares += deviation * deviation;
+            sorted[i] = Math.abs(sorted[i] - median);
+        }
+        Arrays.sort(sorted);
+        final double mad = median(sorted);
+        final double stddev = count < 2 ? 0 : Math.sqrt(squares / (count - 1));
+        final double halfWidth = count < 2 ? 0 : ConvergenceMonitor.studentT95(count - 1) * stddev / Math.sqrt(count);
+
+        int outliers = 0;
+        if (count >= MIN_RUNS) {
+            for (int i = 0; i < count; i++) {
+                final double deviation = Math.abs(values[runs[i]] - median);
+                if (0.6745 * deviation > OUTLIER_Z_SCORE * mad && deviation > MIN_OUTLIER_DEVIATION * Math.abs(median))
+                    runs[outliers++] = runs[i];
+            }
+        }
+        return new RunToRunStatistics(count, median, mad, mean, stddev, mean - halfWidth, mean + halfWidth,
+                outliers == 0 ? NO_RUNS : Arrays.copyOf(runs, outliers));
+    }
+
+    private static double median(double[] sorted) {
+        final int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    /**
+     * @return the number of runs with a value
+     */
+    public int count() {
+        return count;
+    }
+
+    public double median() {
+        return median;
+    }
+
+    /**
+     * @return the median of the absolute deviations from the median
+     */
+    public double medianAbsoluteDeviation() {
+        return medianAbsoluteDeviation;
+    }
+
+    public double mean() {
+        return mean;
+    }
+
+    /**
+     * @return the sample standard deviation, or 0 for a single run
+     */
+    public double stddev() {
+        return stddev;
+    }
+
+    /**
+     * @return the standard deviation relative to the mean, e.g. 0.02 for 2%
+     */
+    public double coefficientOfVariation() {
+        return mean == 0 ? 0 : stddev / mean;
+    }
+
+    /**
+     * @return the lower bound of the 95% confidence interval of the mean
+     */
+    public double confidenceLow() {
+        return confidenceLow;
+    }
+
+    /**
+     * @return the upper bound of the 95% confidence interval of the mean
+     */
+    public double confidenceHigh() {
+        return confidenceHigh;
+    }
+
+    /**
+     * @return the indexes of the outlier runs, in ascending order
+     */
+    @NotNull
+    public int[] outlierRuns() {
+        return outlierRuns.clone();
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "RunToRunStatistics{" +
+                "count=" + count +
+                ", median=" + median +
+                ", medianAbsoluteDeviation=" + medianAbsoluteDeviation +
+                ", mean=" + mean +
+                ", stddev=" + stddev +
+                ", confidenceLow=" + confidenceLow +
+                ", confidenceHigh=" + confidenceHigh +
+                ", outlierRuns=" + Arrays.toString(outlierRuns) +
+                '}';
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.UnsafeMemory;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Records a timestamp for each message at the end of each named stage, so the end to end tail latencies can be broken
+ * down by stage, see {@link JLBH#addStageTracer(String, int, String...)}
+ * <p>
+ * A message is begun with its start time, then each stage is marked when it completes, in order. The time of a stage
+ * is from the end of the previous stage, or the start time for the first stage. The timestamps are written to a
+ * preallocated, off heap ring of records, so tracing doesn't allocate, and the last <code>capacity</code> messages of
+ * each run are analysed. Messages are begun by one thread, but stages may be marked from any thread.
+ */
+public final class StageTracer {
+    static final double TAIL_PERCENTILE = 0.99;
+
+    private final UnsafeMemory memory = OS.memory();
+    @NotNull
+    private final String name;
+    @NotNull
+    private final String[] stages;
+    private final int capacity;
+    private final int recordSize;
+    private final long sizeInBytes;
+    private final long[] totals;
+    private final double[] tailShares;
+    private long address;
+    private long messages;
+    private long tailMessages;
+
+    StageTracer(@NotNull String name, int capacity, @NotNull String... stages) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        if (stages.length == 0)
+            throw new IllegalArgumentException("At least one stage is required");
+        this.name = name;
+        this.stages = stages.clone();
+        this.capacity = Integer.highestOneBit(capacity * 2 - 1);
+        this.recordSize = (stages.length + 1) * 8;
+        this.sizeInBytes = (long) this.capacity * recordSize;
+        this.totals = new long[this.capacity];
+        this.tailShares = new double[stages.length];
+        this.address = memory.allocate(sizeInBytes);
+        reset();
+    }
+
+    @NotNull
+    public String name() {
+        return name;
+    }
+
+    @NotNull
+    public String[] stages() {
+        return stages.clone();
+    }
+
+    /**
+     * Begins tracing a message. Must be called by one thread only, usually the thread running the task.
+     *
+     * @param startTimeNS the start time passed to the task
+     * @return the message to pass to {@link #mark(long, int)}
+     */
+    public long begin(long startTimeNS) {
+        final long message = messages++;
+        final long record = recordAddress(message);
+        for (int i = 1; i <= stages.length; i++)
+            memory.writeLong(record + i * 8L, 0);
+        memory.writeOrderedLong(record, startTimeNS);
+        return message;
+    }
+
+    /**
+     * Marks the end of a stage of a message now.
+     *
+     * @param message returned by {@link #begin(long)}
+     * @param stage   the index of the stage, in the order they were named
+     */
+    public void mark(long message, int stage) {
+        mark(message, stage, System.nanoTime());
+    }
+
+    /**
+     * Marks the end of a stage of a message.
+     *
+     * @param message returned by {@link #begin(long)}
+     * @param stage   the index of the stage, in the order they were named
+     * @param timeNS  when the stage ended, from <code>System.nanoTime()</code>
+     */
+    public void mark(long message, int stage, long timeNS) {
+        memory.writeOrderedLong(recordAddress(message) + (stage + 1) * 8L, timeNS);
+    }
+
+    /**
+     * Finds the messages traced this run which were at or over the {@link #TAIL_PERCENTILE} from start to the end of
+     * the last stage, and the share of their time spent in each stage. Messages without every stage marked are ignored.
+     */
+    void analyseRun() {
+        final int records = (int) Math.min(messages, capacity);
+        int complete = 0;
+        for (int r = 0; r < records; r++) {
+            final long total = total(addressOfRecord(r));
+            if (total >= 0)
+                totals[complete++] = total;
+        }
+        Arrays.fill(tailShares, 0);
+        tailMessages = 0;
+        if (complete == 0)
+            return;
+        Arrays.sort(totals, 0, complete);
+        final long threshold = totals[Math.min(complete - 1, (int) (complete * TAIL_PERCENTILE))];
+        double tailTotal = 0;
+        for (int r = 0; r < records; r++) {
+            final long record = addressOfRecord(r);
+            final long total = total(record);
+            if (total < threshold)
+                continue;
+            tailMessages++;
+            tailTotal += total;
+            long previous = memory.readVolatileLong(record);
+            for (int s = 0; s < stages.length; s++) {
+                final long mark = memory.readVolatileLong(record + (s + 1) * 8L);
+                tailShares[s] += mark - previous;
+                previous = mark;
+            }
+        }
+        for (int s = 0; s < stages.length; s++)
+            tailShares[s] = tailTotal == 0 ? 0 : tailShares[s] / tailTotal;
+    }
+
+    /**
+     * @return the number of messages in the tail at the last {@link #analyseRun()}
+     */
+    long tailMessages() {
+        return tailMessages;
+    }
+
+    /**
+     * @return the share of the tail time spent in each stage at the last {@link #analyseRun()}, adding up to 1
+     */
+    double[] tailShares() {
+        return tailShares.clone();
+    }
+
+    void reset() {
+        memory.setMemory(address, sizeInBytes, (byte) 0);
+        messages = 0;
+    }
+
+    void close() {
+        if (address != 0) {
+            memory.freeMemory(address, sizeInBytes);
+            address = 0;
+        }
+    }
+
+    // the time from the start to the end of the last stage, or -1 if a stage wasn't marked
+    private long total(long record) {
+        for (int s = 1; s <= stages.length; s++)
+            if (memory.readVolatileLong(record + s * 8L) == 0)
+                return -1;
+        return memory.readVolatileLong(record + stages.length * 8L) - memory.readVolatileLong(record);
+    }
+
+    private long recordAddress(long message) {
+        return addressOfRecord((int) (message & (capacity - 1)));
+    }
+
+    private long addressOfRecord(int record) {
+        return address + (long) record * recordSize;
+    }
+}
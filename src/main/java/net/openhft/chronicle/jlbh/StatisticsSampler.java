@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.NanoSampler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Accumulates the {@link RunStatistics} of a run as well as sampling a histogram, see
+ * {@link JLBHOptions#statistics(boolean)}
+ * <p>
+ * The mean and variance are accumulated by Welford's method, so they are accurate however many samples there are.
+ */
+final class StatisticsSampler implements NanoSampler {
+    @Nullable
+    private final NanoSampler histogram;
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+
+    /**
+     * @param histogram to sample as well, or null to only accumulate the statistics
+     */
+    StatisticsSampler(@Nullable NanoSampler histogram) {
+        this.histogram = histogram;
+    }
+
+    @Override
+    public void sampleNanos(long durationNs) {
+        if (histogram != null)
+            histogram.sampleNanos(durationNs);
+        count++;
+        final double delta = durationNs - mean;
+        mean += delta / count;
+        m2 += delta * (durationNs - mean);
+        if (durationNs < min)
+            min = durationNs;
+    }
+
+    @NotNull
+    RunStatistics statistics() {
+        if (count == 0)
+            return new RunStatistics(0, Double.NaN, 0, Double.NaN);
+        return new RunStatistics(count, mean, count > 1 ? Math.sqrt(m2 / (count - 1)) : 0, min);
+    }
+
+    void reset() {
+        count = 0;
+        mean = 0;
+        m2 = 0;
+        min = Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Builds lines of text in a reusable buffer, producing the same text as <code>String.format</code> and string
+ * concatenation for the formats the text reporter uses, without allocating, so reporting at the end of a run doesn't
+ * leave garbage to be collected in the next run.
+ * <p>
+ * Numbers use the decimal and grouping separators of the default format locale, as <code>String.format</code> does.
+ * The rare values within a few ulps of a rounding tie fall back to <code>String.format</code>, as it rounds the
+ * shortest decimal representation rather than the exact value.
+ */
+final class TextFormatter {
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+    private static final double[] MICROS_PERCENTILES = {0.5, 0.9, 0.99, 0.999, 0.9999, 1};
+    private static final String[] MICROS_SEPARATORS = {" / ", "  ", " / ", "  ", " - ", ""};
+
+    private final StringBuilder sb = new StringBuilder(256);
+    private final Locale locale;
+    private final char decimalSeparator;
+    private final char groupingSeparator;
+    private byte[] bytes = new byte[256];
+    private int lineStart;
+
+    TextFormatter() {
+        locale = Locale.getDefault(Locale.Category.FORMAT);
+        final DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        decimalSeparator = symbols.getDecimalSeparator();
+        groupingSeparator = symbols.getGroupingSeparator();
+    }
+
+    TextFormatter append(@NotNull CharSequence cs) {
+        sb.append(cs);
+        return this;
+    }
+
+    TextFormatter append(char ch) {
+        sb.append(ch);
+        return this;
+    }
+
+    TextFormatter append(long l) {
+        sb.append(l);
+        return this;
+    }
+
+    TextFormatter append(boolean b) {
+        sb.append(b);
+        return this;
+    }
+
+    /**
+     * The same as <code>String.format("%,d", l)</code>
+     */
+    TextFormatter appendGrouped(long l) {
+        if (l < 0) {
+            if (l == Long.MIN_VALUE) {
+                sb.append(String.format(locale, "%,d", l));
+                return this;
+            }
+            sb.append('-');
+            l = -l;
+        }
+        final int start = sb.length();
+        sb.append(l);
+        for (int i = sb.length() - 3; i > start; i -= 3)
+            sb.insert(i, groupingSeparator);
+        return this;
+    }
+
+    /**
+     * The same as <code>Double.toString(ms / 1000.0)</code> for a time in ms, e.g. 1.5 or 2.0
+     */
+    TextFormatter appendSeconds(long ms) {
+        return appendTenThousandths(ms * 10);
+    }
+
+    /**
+     * The same as <code>String.format("%." + decimals + "f", d)</code>
+     */
+    TextFormatter appendFixed(double d, int decimals) {
+        return appendFixed(d, decimals, false);
+    }
+
+    /**
+     * The same as <code>String.format("%,." + decimals + "f", d)</code>
+     */
+    TextFormatter appendGroupedFixed(double d, int decimals) {
+        return appendFixed(d, decimals, true);
+    }
+
+    private TextFormatter appendFixed(double d, int decimals, boolean grouped) {
+        if (Double.isNaN(d)) {
+            sb.append("NaN");
+            return this;
+        }
+        if (Double.doubleToRawLongBits(d) < 0) {
+            sb.append('-');
+            d = -d;
+        }
+        if (Double.isInfinite(d)) {
+            sb.append("Infinity");
+            return this;
+        }
+        final long scale = POWERS_OF_TEN[decimals];
+        final double scaled = d * scale;
+        long unscaled = (long) scaled;
+        final double fraction = scaled - unscaled;
+        if (scaled >= 1L << 52 || Math.abs(fraction - 0.5) <= 4 * Math.ulp(scaled)) {
+            sb.append(String.format(locale, (grouped ? "%,." : "%.") + decimals + "f", d));
+            return this;
+        }
+        if (fraction > 0.5)
+            unscaled++;
+        final int start = sb.length();
+        sb.append(unscaled / scale);
+        if (grouped)
+            for (int i = sb.length() - 3; i > start; i -= 3)
+                sb.insert(i, groupingSeparator);
+        if (decimals > 0) {
+            sb.append(decimalSeparator);
+            final long remainder = unscaled % scale;
+            for (long p = scale / 10; p > remainder && p > 1; p /= 10)
+                sb.append('0');
+            sb.append(remainder);
+        }
+        return this;
+    }
+
+    /**
+     * The same as <code>Double.toString(Math.round(percentile * 1e6) / 1e4)</code>, e.g. 99.99
+     */
+    TextFormatter appendPercentile(double percentile) {
+        return appendTenThousandths(Math.round(percentile * 1e6));
+    }
+
+    /**
+     * Appends the percentiles in microseconds in the layout of <code>Histogram.toMicrosFormat()</code>, with three
+     * decimal places under 1 us, otherwise two.
+     */
+    TextFormatter appendMicros(@NotNull Histogram histogram) {
+        sb.append("50/90 99/99.9 99.99 - worst was ");
+        for (int i = 0; i < MICROS_PERCENTILES.length; i++) {
+            final double micros = histogram.percentile(MICROS_PERCENTILES[i]) / 1e3;
+            appendFixed(micros, micros < 1 ? 3 : 2);
+            sb.append(MICROS_SEPARATORS[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Appends the percentiles in microseconds in the same layout as {@link #appendMicros(Histogram)}, e.g.
+     * <code>50/95/99.5 - worst was 8.07 / 11.66 / 12.46 - 12.56</code>
+     *
+     * @param percentiles in ascending order, the last is the worst
+     */
+    TextFormatter appendMicros(@NotNull Histogram histogram, @NotNull double[] percentiles) {
+        for (int i = 0; i < percentiles.length - 1; i++) {
+            if (i > 0)
+                sb.append('/');
+            appendPercentile(percentiles[i]);
+            if (sb.charAt(sb.length() - 1) == '0' && sb.charAt(sb.length() - 2) == '.')
+                sb.setLength(sb.length() - 2);
+        }
+        sb.append(" - worst was ");
+        for (int i = 0; i < percentiles.length; i++) {
+            if (i == percentiles.length - 1)
+                sb.append(i == 0 ? "" : " - ");
+            else if (i > 0)
+                sb.append(" / ");
+            final double micros = histogram.percentile(percentiles[i]) / 1e3;
+            appendFixed(micros, micros < 1 ? 3 : 2);
+        }
+        return this;
+    }
+
+    /**
+     * Pads with spaces on the left from <code>start</code> to <code>width</code> characters, as <code>%12s</code> does
+     */
+    TextFormatter padLeft(int start, int width) {
+        while (sb.length() - start < width)
+            sb.insert(start, ' ');
+        return this;
+    }
+
+    /**
+     * Pads the current line until it is <code>length</code> characters long
+     */
+    TextFormatter padUntil(int length, char ch) {
+        while (sb.length() - lineStart < length)
+            sb.append(ch);
+        return this;
+    }
+
+    int length() {
+        return sb.length();
+    }
+
+    void setLength(int length) {
+        sb.setLength(length);
+    }
+
+    TextFormatter newLine() {
+        sb.append(LINE_SEPARATOR);
+        lineStart = sb.length();
+        return this;
+    }
+
+    TextFormatter newLine(char newLine) {
+        sb.append(newLine);
+        lineStart = sb.length();
+        return this;
+    }
+
+    /**
+     * Writes the text as ASCII bytes, so the <code>PrintStream</code> doesn't need to encode it, and clears it.
+     */
+    void writeTo(@NotNull PrintStream printStream) {
+        final int length = sb.length();
+        if (bytes.length < length)
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+        for (int i = 0; i < length; i++) {
+            final char ch = sb.charAt(i);
+            if (ch >= 0x80) {
+                // let the PrintStream encode it
+                printStream.print(sb);
+                clear();
+                return;
+            }
+            bytes[i] = (byte) ch;
+        }
+        printStream.write(bytes, 0, length);
+        clear();
+    }
+
+    void appendTo(@NotNull Appendable appendable) throws IOException {
+        appendable.append(sb);
+        clear();
+    }
+
+    void clear() {
+        sb.setLength(0);
+        lineStart = 0;
+    }
+
+    @Override
+    public String toString() {
+        return sb.toString();
+    }
+
+    // the same as Double.toString(n / 1e4)
+    private TextFormatter appendTenThousandths(long n) {
+        if (n < 10 || n >= 100_000_000_000L) {
+            // Double.toString uses scientific notation
+            sb.append(n / 1e4);
+            return this;
+        }
+        sb.append(n / 10_000).append('.');
+        long fraction = n % 10_000;
+        if (fraction == 0) {
+            sb.append('0');
+            return this;
+        }
+        for (long p = 1_000; p > fraction; p /= 10)
+            sb.append('0');
+        while (fraction % 10 == 0)
+            fraction /= 10;
+        sb.append(fraction);
+        return this;
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.io.IORuntimeException;
+import net.openhft.chronicle.core.util.Histogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Writes the human-readable results JLBH has always printed.
+ * <p>
+ * The results of each run and the summaries are written without allocating, see {@link TextFormatter}, apart from
+ * the percentiles of histograms formatted by <code>Histogram.toMicrosFormat()</code> unless allocation free reporting
+ * is enabled, and the path of each profile.
+ */
+final class TextJLBHReporter implements JLBHReporter {
+
+    @NotNull
+    private final PrintStream printStream;
+    private final boolean allocationFree;
+    private final TextFormatter text = new TextFormatter();
+    // if false, the percentiles of each run are those of Histogram.toMicrosFormat() rather than those reported
+    private boolean reportedPercentiles;
+    private final PercentileSummary.RowConsumer summaryRow = (percentile, values, variance) -> appendRow(text, percentile, values, variance);
+    private final PercentileSummary.StatisticConsumer statisticRow = (statistic, values, variation) -> appendRow(text, statistic, values, variation);
+    private double[] rowValues = new double[0];
+    // reused rather than a lambda capturing each call's arguments
+    private final BiConsumer<String, Long> perfCounterLine = this::appendPerfCounter;
+    private final BiConsumer<String, Double> stageShare = (stage, share) ->
+            text.append(' ').append(stage).append(' ').appendFixed(share * 100, 1).append('%');
+    private final BiConsumer<Double, Double> percentileHalfWidth = (percentile, halfWidth) ->
+            text.append(' ').appendPercentile(percentile).append(" +/-").appendFixed(halfWidth * 100, 2).append('%');
+    private long perfCounterIterations;
+
+    TextJLBHReporter(@NotNull PrintStream printStream) {
+        this(printStream, false);
+    }
+
+    /**
+     * @param printStream    to write to
+     * @param allocationFree if true, histogram percentiles are formatted by JLBH rather than
+     *                       <code>Histogram.toMicrosFormat()</code>, so no results are allocated
+     */
+    TextJLBHReporter(@NotNull PrintStream printStream, boolean allocationFree) {
+        this(printStream, allocationFree, false);
+    }
+
+    /**
+     * @param printStream    to write to
+     * @param allocationFree if true, histogram percentiles are formatted by JLBH rather than
+     *                       <code>Histogram.toMicrosFormat()</code>, so no results are allocated
+     * @param reportedPercentiles if true, each run is written with the percentiles reported, otherwise with those of
+     *                            <code>Histogram.toMicrosFormat()</code>
+     */
+    TextJLBHReporter(@NotNull PrintStream printStream, boolean allocationFree, boolean reportedPercentiles) {
+        this.printStream = printStream;
+        this.allocationFree = allocationFree;
+        this.reportedPercentiles = reportedPercentiles;
+    }
+
+    /**
+     * Writes each run with the percentiles reported from now on, once they are the same for every run
+     */
+    void reportedPercentiles() {
+        this.reportedPercentiles = true;
+    }
+
+    static void appendSummary(@NotNull Appendable appendable, String label, int runs, @NotNull PercentileSummary percentileSummary) {
+        final TextFormatter text = new TextFormatter();
+        appendSummary(text, new double[percentileSummary.runs()], (percentile, values, variance) -> appendRow(text, percentile, values, variance),
+                (statistic, values, variation) -> appendRow(text, statistic, values, variation), label, runs, percentileSummary);
+        try {
+            text.appendTo(appendable);
+        } catch (IOException e) {
+            throw new IORuntimeException("Error writing percentile summary", e);
+        }
+    }
+
+    private static void appendSummary(@NotNull TextFormatter text, double[] rowValues, @NotNull PercentileSummary.RowConsumer row,
+                                      @NotNull PercentileSummary.StatisticConsumer statisticRow,
+                                      String label, int runs, @NotNull PercentileSummary percentileSummary) {
+        text.append("-------------------------------- SUMMARY (").append(label).append(") ")
+                .append(timeUnitToString(TimeUnit.MICROSECONDS)).append(" ----")
+                .padUntil(100, '-').newLine('\n');
+        appendRunSummaryHeader(text, runs);
+        percentileSummary.forEachRow(rowValues, row);
+        percentileSummary.forEachStatistic(rowValues, statisticRow);
+        text.append("----").padUntil(100, '-').newLine('\n');
+    }
+
+    private static void appendRow(@NotNull TextFormatter text, double percentile, double[] values, double variance) {
+        appendPercentile(text, percentile);
+        appendValues(text, values, 2, variance);
+    }
+
+    private static void appendRow(@NotNull TextFormatter text, String statistic, double[] values, double variation) {
+        final int start = text.length();
+        text.append(statistic).append(":     ").setLength(start + 9);
+        appendValues(text, values, "count".equals(statistic) ? 0 : 2, variation);
+    }
+
+    private static void appendValues(@NotNull TextFormatter text, double[] values, int decimals, double variance) {
+        for (double value : values) {
+            final int start = text.length();
+            text.appendFixed(value, decimals).padLeft(start, 12).append(' ');
+        }
+        final int start = text.length();
+        text.appendFixed(variance, 2).padLeft(start, 12).newLine();
+    }
+
+    private static void appendPercentile(@NotNull TextFormatter text, double percentile) {
+        final int start = text.length();
+        if (percentile == 1)
+            text.append("worst");
+        else
+            text.appendPercentile(percentile);
+        text.append(":     ").setLength(start + 9);
+    }
+
+    private static void appendRunSummaryHeader(@NotNull TextFormatter text, int runs) {
+        text.append("Percentile");
+        for (int i = 1; i < runs + 1; i++) {
+            if (i == 1)
+                text.append("   run").append(i);
+            else
+                text.append("         run").append(i);
+        }
+        text.append("      % Variation").newLine('\n');
+    }
+
+    static String timeUnitToString(@NotNull TimeUnit timeUnit) {
+        switch (timeUnit) {
+            case NANOSECONDS:
+                return "ns";
+            case MICROSECONDS:
+                return "us";
+            case MILLISECONDS:
+                return "ms";
+            case SECONDS:
+                return "s";
+            case MINUTES:
+                return "min";
+            case HOURS:
+                return "h";
+            case DAYS:
+                return "day";
+            default:
+                throw new IllegalArgumentException("Unrecognized time unit value '" + timeUnit + "'");
+        }
+    }
+
+    @Override
+    public void warmedUp(long warmUpIterations, long durationMS) {
+        text.append("Warm up complete (").append(warmUpIterations).append(" iterations took ")
+                .appendSeconds(durationMS).append(" s)").newLine().writeTo(printStream);
+    }
+
+    @Override
+    public void warmUpSteadyState(boolean steadyStateReached) {
+        text.append(steadyStateReached
+                ? "Warm up reached a steady state"
+                : "WARNING: Warm up did not reach a steady state, JIT compilation or latencies were still changing")
+                .newLine().writeTo(printStream);
+    }
+
+    @Override
+    public void runHeader(int run, long runTimeMS, @NotNull LatencyDistributor latencyDistributor, boolean accountForCoordinatedOmission,
+                          int throughput, @NotNull TimeUnit throughputTimeUnit, long latencyBetweenTasksNS) {
+        text.append("-------------------------------- BENCHMARK RESULTS (RUN ").append(run).append(") ")
+                .append(timeUnitToString(TimeUnit.MICROSECONDS)).append(" ----").padUntil(100, '-').newLine();
+        text.append("Run time: ").appendSeconds(runTimeMS).append(" s, distribution: ").append(latencyDistributor.toString()).newLine();
+        text.append("Correcting for co-ordinated:").append(accountForCoordinatedOmission).newLine();
+        text.append("Target throughput:").append(throughput).append('/').append(timeUnitToString(throughputTimeUnit))
+                .append(" = 1 message every ").append(latencyBetweenTasksNS / 1000).append("us").newLine();
+        text.writeTo(printStream);
+    }
+
+    @Override
+    public void endToEnd(int run, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+        histogram("End to End: ", histogram, percentiles);
+    }
+
+    @Override
+    public void probe(int run, @NotNull String name, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+        text.append(name);
+        histogram(" ", histogram, percentiles);
+    }
+
+    @Override
+    public void osJitter(int run, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+        histogram("OS Jitter ", histogram, percentiles);
+    }
+
+    private void histogram(String prefix, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+        text.append(prefix).append('(').appendGrouped(histogram.totalCount()).append(')').padUntil(48, ' ');
+        if (reportedPercentiles)
+            text.appendMicros(histogram, percentiles);
+        else if (allocationFree)
+            text.appendMicros(histogram);
+        else
+            text.append(histogram.toMicrosFormat());
+        text.newLine().writeTo(printStream);
+    }
+
+    @Override
+    public void perfCounters(int run, long iterations, @NotNull Map<String, Long> counts) {
+        perfCounterIterations = iterations;
+        counts.forEach(perfCounterLine);
+        final Long cycles = counts.get("cycles");
+        final Long instructions = counts.get("instructions");
+        if (cycles != null && instructions != null && cycles > 0)
+            text.append("instructions/cycle").padUntil(48, ' ').appendFixed((double) instructions / cycles, 2).newLine();
+        text.writeTo(printStream);
+    }
+
+    private void appendPerfCounter(String event, long count) {
+        text.append(event).append("/iteration (").appendGrouped(count).append(')').padUntil(48, ' ')
+                .appendGroupedFixed((double) count / perfCounterIterations, 2).newLine();
+    }
+
+    @Override
+    public void virtualThreads(int run, int maxInFlight, long pinnedCount) {
+        text.append("Virtual threads: max in flight ").appendGrouped(maxInFlight)
+                .append(", pinned ").appendGrouped(pinnedCount).append(" times").newLine().writeTo(printStream);
+    }
+
+    @Override
+    public void statistics(int run, @NotNull String name, @NotNull RunStatistics statistics) {
+        text.append("end to end".equals(name) ? "End to End" : name).append(" statistics").padUntil(48, ' ');
+        text.append("count ").appendGrouped(statistics.count())
+                .append(" mean ").appendFixed(statistics.meanNs() / 1e3, 2)
+                .append(" / stddev ").appendFixed(statistics.stddevNs() / 1e3, 2)
+                .append(" / min ").appendFixed(statistics.minNs() / 1e3, 2).newLine().writeTo(printStream);
+    }
+
+    @Override
+    public void stageBreakdown(int run, @NotNull String name, double percentile, long messages, @NotNull Map<String, Double> shares) {
+        text.append("Stage breakdown (").append(name).append(") of ").appendGrouped(messages)
+                .append(" messages at or over the ").appendPercentile(percentile).append(" percentile:");
+        shares.forEach(stageShare);
+        text.newLine().writeTo(printStream);
+    }
+
+    @Override
+    public void lostResponses(int run, long lost) {
+        text.append("Lost responses: ").appendGrouped(lost).newLine().writeTo(printStream);
+    }
+
+    @Override
+    public void convergence(int run, long samples, boolean converged, @NotNull Map<Double, Double> relativeHalfWidths) {
+        text.append(converged ? "Converged" : "Not converged").append(" after ").appendGrouped(samples)
+                .append(" samples, 95% confidence interval:");
+        relativeHalfWidths.forEach(percentileHalfWidth);
+        text.newLine().writeTo(printStream);
+    }
+
+    @Override
+    public void closedLoop(int run, int concurrency, double throughput, double meanLatencyNs, double littlesLawConcurrency) {
+        text.append("Closed loop: concurrency ").appendGrouped(concurrency)
+                .append(", throughput ").appendGroupedFixed(throughput, 0)
+                .append("/s, mean latency ").appendGroupedFixed(meanLatencyNs / 1e3, 3)
+                .append(" us, Little's law concurrency ").appendGroupedFixed(littlesLawConcurrency, 2)
+                .append(" (").appendFixed(100 * littlesLawConcurrency / concurrency, 1).append("%)").newLine().writeTo(printStream);
+    }
+
+    @Override
+    public void profile(int run, @NotNull Path profile) {
+        text.append("Profile: ").append(profile.toString()).newLine().writeTo(printStream);
+    }
+
+    @Override
+    public void runComplete(int run) {
+        text.append("----").padUntil(100, '-').newLine().writeTo(printStream);
+    }
+
+    @Override
+    public void summary(@NotNull String label, int runs, @NotNull PercentileSummary summary) {
+        if (rowValues.length != summary.runs())
+            rowValues = new double[summary.runs()];
+        appendSummary(text, rowValues, summaryRow, statisticRow, label, runs, summary);
+        text.writeTo(printStream);
+    }
+
+    @Override
+    public void outlierRun(int run, boolean repeated) {
+        if (repeated)
+            text.append("Run ").append(run).append(" is an outlier, repeating it");
+        else
+            text.append("WARNING: Run ").append(run).append(" is an outlier");
+        text.newLine().writeTo(printStream);
+    }
+
+    @Override
+    public void runToRunSummary(@NotNull String label, @NotNull PercentileSummary summary, @NotNull int[] runNumbers) {
+        text.append("-------------------------------- RUN TO RUN (").append(label).append(") ")
+                .append(timeUnitToString(TimeUnit.MICROSECONDS)).append(" ----")
+                .padUntil(100, '-').newLine();
+        text.append("Percentile");
+        appendHeading("median", 21);
+        appendHeading("MAD", 33);
+        appendHeading("CV %", 45);
+        appendHeading("95% confidence", 67);
+        text.append("  outlier runs").newLine();
+        summary.forEachRunToRun((percentile, statistics) -> {
+            appendPercentile(text, percentile);
+            appendColumn(statistics.median(), 2, 12);
+            appendColumn(statistics.medianAbsoluteDeviation(), 2, 12);
+            appendColumn(100 * statistics.coefficientOfVariation(), 2, 12);
+            appendColumn(statistics.confidenceLow(), 2, 12);
+            text.append(" - ");
+            appendColumn(statistics.confidenceHigh(), 2, 7);
+            text.append("  ");
+            final int[] outlierRuns = statistics.outlierRuns();
+            for (int i = 0; i < outlierRuns.length; i++)
+                text.append(i == 0 ? "run" : ", run").append(runNumbers[outlierRuns[i]]);
+            text.newLine();
+        });
+        text.append("----").padUntil(100, '-').newLine();
+        text.writeTo(printStream);
+    }
+
+    private void appendHeading(String heading, int end) {
+        text.padUntil(end - heading.length(), ' ').append(heading);
+    }
+
+    private void appendColumn(double value, int decimals, int width) {
+        final int start = text.length();
+        text.appendFixed(value, decimals).padLeft(start, width);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.io.IORuntimeException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs each iteration of the task on its own virtual thread, so blocking tasks can have many requests in flight.
+ * <p>
+ * Virtual threads are created reflectively, so this is only usable on Java 21+, but JLBH still builds for earlier versions.
+ */
+final class VirtualThreadDriver {
+    static final String VIRTUAL_THREAD_PINNED = "jdk.VirtualThreadPinned";
+
+    @NotNull
+    private final JLBHTask task;
+    @NotNull
+    private final ExecutorService executor;
+    @Nullable
+    private final Semaphore permits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    @Nullable
+    private Recording pinned;
+
+    /**
+     * @param task        to run
+     * @param maxInFlight the most iterations run concurrently, or 0 for no limit
+     */
+    VirtualThreadDriver(@NotNull JLBHTask task, int maxInFlight) {
+        this.task = task;
+        this.executor = newVirtualThreadPerTaskExecutor();
+        this.permits = maxInFlight > 0 ? new Semaphore(maxInFlight) : null;
+    }
+
+    @NotNull
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21+, running on Java " + Jvm.majorVersion(), e);
+        }
+    }
+
+    /**
+     * Starts an iteration on a virtual thread. If the in flight limit has been reached this waits for an iteration
+     * to complete, the start time passed to the task is unchanged, so the wait is included in its latency.
+     * If interrupted while waiting the iteration is not started, and the interrupt is left for the caller to end
+     * the run.
+     */
+    void run(long startTimeNS) {
+        if (permits != null) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        executor.execute(() -> {
+            final int concurrency = inFlight.incrementAndGet();
+            if (concurrency > maxInFlight.get())
+                maxInFlight.accumulateAndGet(concurrency, Math::max);
+            try {
+                task.run(startTimeNS);
+            } finally {
+                inFlight.decrementAndGet();
+                if (permits != null)
+                    permits.release();
+            }
+        });
+    }
+
+    void startOfRun() {
+        maxInFlight.set(inFlight.get());
+        pinned = new Recording();
+        pinned.enable(VIRTUAL_THREAD_PINNED).withThreshold(Duration.ZERO);
+        pinned.start();
+    }
+
+    /**
+     * @return the most iterations in flight at once during this run
+     */
+    int maxInFlight() {
+        return maxInFlight.get();
+    }
+
+    /**
+     * @return the number of times a virtual thread was pinned to its carrier thread while blocked during this run
+     */
+    long endOfRunPinnedCount() {
+        if (pinned == null)
+            return 0;
+        Path file = null;
+        try {
+            pinned.stop();
+            file = Files.createTempFile("jlbh-pinned", ".jfr");
+            pinned.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> VIRTUAL_THREAD_PINNED.equals(e.getEventType().getName()))
+                    .count();
+        } catch (IOException e) {
+            throw new IORuntimeException("Unable to read virtual thread pinned events", e);
+        } finally {
+            pinned.close();
+            pinned = null;
+            if (file != null)
+                //noinspection ResultOfMethodCallIgnored
+                file.toFile().delete();
+        }
+    }
+
+    void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS))
+                executor.shutdownNow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh.profiler;
+
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.io.IORuntimeException;
+import net.openhft.chronicle.jlbh.JLBHProfiler;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Profiles each run by attaching a locally installed <a href="https://github.com/async-profiler/async-profiler">async-profiler</a>
+ * to this JVM, writing to <code>{directory}/{prefix}-run{n}-{event}.{format}</code>
+ * e.g. <code>new AsyncProfiler(Paths.get("/opt/async-profiler/bin/asprof"), Paths.get("profiles"), "alloc", "html")</code>
+ * for allocation flame graphs.
+ */
+public class AsyncProfiler implements JLBHProfiler {
+
+    @NotNull
+    private final Path asprof;
+    @NotNull
+    private final Path directory;
+    @NotNull
+    private final String event;
+    @NotNull
+    private final String format;
+    @NotNull
+    private final String prefix = "jlbh";
+
+    /**
+     * @param asprof    the <code>asprof</code> (or <code>profiler.sh</code> for older versions) launcher
+     * @param directory to write the profiles to
+     * @param event     to profile e.g. <code>cpu</code>, <code>alloc</code>, <code>wall</code>, <code>cache-misses</code>
+     * @param format    of the output, used as the file extension e.g. <code>html</code>, <code>jfr</code>, <code>collapsed</code>
+     */
+    public AsyncProfiler(@NotNull Path asprof, @NotNull Path directory, @NotNull String event, @NotNull String format) {
+        this.asprof = asprof;
+        this.directory = directory;
+        this.event = event;
+        this.format = format;
+    }
+
+    static void execute(String... command) {
+        try {
+            final Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            final int exitCode = process.waitFor();
+            if (exitCode != 0)
+                throw new IORuntimeException("Exit code " + exitCode + " from " + Arrays.toString(command));
+        } catch (IOException e) {
+            throw new IORuntimeException("Unable to run " + Arrays.toString(command), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IORuntimeException("Interrupted running " + Arrays.toString(command), e);
+        }
+    }
+
+    @Override
+    public void start(int run) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new IORuntimeException("Unable to create " + directory, e);
+        }
+        execute(asprof.toString(), "start", "-e", event, Integer.toString(OS.getProcessId()));
+    }
+
+    @NotNull
+    @Override
+    public Path stop(int run) {
+        final Path file = directory.resolve(prefix + "-run" + run + "-" + event + "." + format);
+        execute(asprof.toString(), "stop", "-f", file.toAbsolutePath().toString(), Integer.toString(OS.getProcessId()));
+        return file;
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncProfiler{" +
+                "asprof=" + asprof +
+                ", directory=" + directory +
+                ", event=" + event +
+                ", format=" + format +
+                '}';
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh.profiler;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import net.openhft.chronicle.core.io.IORuntimeException;
+import net.openhft.chronicle.jlbh.JLBHProfiler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+/**
+ * Profiles each run with a Java Flight Recording, written to <code>{directory}/{prefix}-run{n}.jfr</code>
+ * <p>
+ * The default <code>profile</code> configuration includes CPU execution and allocation samples, which most
+ * JFR tools can render as flame graphs.
+ */
+public class JFRProfiler implements JLBHProfiler {
+
+    @NotNull
+    private final Path directory;
+    @NotNull
+    private final String prefix;
+    @NotNull
+    private final String configuration;
+    @Nullable
+    private Recording recording;
+
+    public JFRProfiler(@NotNull Path directory) {
+        this(directory, "jlbh", "profile");
+    }
+
+    /**
+     * @param directory     to write the recordings to
+     * @param prefix        for the recording file names
+     * @param configuration name of the JFR configuration to use e.g. <code>default</code> or <code>profile</code>
+     */
+    public JFRProfiler(@NotNull Path directory, @NotNull String prefix, @NotNull String configuration) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.configuration = configuration;
+    }
+
+    @Override
+    public void start(int run) {
+        try {
+            Files.createDirectories(directory);
+            recording = new Recording(Configuration.getConfiguration(configuration));
+        } catch (IOException | ParseException e) {
+            throw new IORuntimeException("Unable to start JFR recording with configuration " + configuration, e);
+        }
+        recording.setName(prefix + "-run" + run);
+        recording.start();
+    }
+
+    @Nullable
+    @Override
+    public Path stop(int run) {
+        if (recording == null)
+            return null;
+        final Path file = directory.resolve(prefix + "-run" + run + ".jfr");
+        try {
+            recording.stop();
+            recording.dump(file);
+        } catch (IOException e) {
+            throw new IORuntimeException("Unable to write JFR recording " + file, e);
+        } finally {
+            recording.close();
+            recording = null;
+        }
+        return file;
+    }
+
+    @Override
+    public String toString() {
+        return "JFRProfiler{" +
+                "directory=" + directory +
+                ", configuration=" + configuration +
+                '}';
+    }
+}
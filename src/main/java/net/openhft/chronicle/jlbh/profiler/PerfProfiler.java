@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh.profiler;
+
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.io.IORuntimeException;
+import net.openhft.chronicle.jlbh.JLBHProfiler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Profiles each run with Linux <code>perf record -g</code> attached to this JVM, writing to
+ * <code>{directory}/{prefix}-run{n}.perf.data</code>
+ * <p>
+ * Java frames are only symbolised if the JVM is running with a perf map agent, or <code>-XX:+DumpPerfMapAtExit</code>.
+ */
+public class PerfProfiler implements JLBHProfiler {
+
+    @NotNull
+    private final Path directory;
+    private final int frequency;
+    @NotNull
+    private final String prefix = "jlbh";
+    @Nullable
+    private Process process;
+    @Nullable
+    private Path file;
+
+    public PerfProfiler(@NotNull Path directory) {
+        this(directory, 999);
+    }
+
+    /**
+     * @param directory to write the perf.data files to
+     * @param frequency sampling frequency in Hz
+     */
+    public PerfProfiler(@NotNull Path directory, int frequency) {
+        this.directory = directory;
+        this.frequency = frequency;
+    }
+
+    @Override
+    public void start(int run) {
+        file = directory.resolve(prefix + "-run" + run + ".perf.data");
+        try {
+            Files.createDirectories(directory);
+            process = new ProcessBuilder("perf", "record", "-g",
+                    "-F", Integer.toString(frequency),
+                    "-p", Integer.toString(OS.getProcessId()),
+                    "-o", file.toAbsolutePath().toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+        } catch (IOException e) {
+            throw new IORuntimeException("Unable to start perf record", e);
+        }
+    }
+
+    @Nullable
+    @Override
+    public Path stop(int run) {
+        if (process == null)
+            return null;
+        // perf record writes its output on SIGTERM
+        process.destroy();
+        try {
+            if (!process.waitFor(30, TimeUnit.SECONDS))
+                process.destroyForcibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        process = null;
+        return file;
+    }
+
+    @Override
+    public String toString() {
+        return "PerfProfiler{" +
+                "directory=" + directory +
+                ", frequency=" + frequency +
+                '}';
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh.util;
+
+import net.openhft.chronicle.core.io.IORuntimeException;
+import net.openhft.chronicle.core.util.Histogram;
+import net.openhft.chronicle.jlbh.JLBHReporter;
+import net.openhft.chronicle.jlbh.LatencyDistributor;
+import net.openhft.chronicle.jlbh.PercentileSummary;
+import net.openhft.chronicle.jlbh.RunStatistics;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the results as CSV rows of <code>event,run,name,count,percentile,value</code>, one row per value.
+ * <ul>
+ *     <li><code>warmUp</code> - count is the warmup iterations, value the time taken in ms</li>
+ *     <li><code>warmUpSteadyState</code> - value is 1 if an adaptive warmup reached a steady state, otherwise 0</li>
+ *     <li><code>runTime</code> - value is the time taken by the run in ms</li>
+ *     <li><code>endToEnd</code>, <code>probe</code>, <code>osJitter</code> - value is the latency at that percentile in ns</li>
+ *     <li><code>stageShare</code> - name is the tracer and stage, count the number of messages at or over the
+ *     percentile, value the share of their time spent in that stage</li>
+ *     <li><code>perfCounter</code> - count is the total for the run, value the count per iteration</li>
+ *     <li><code>maxInFlight</code>, <code>pinned</code> - value is the most virtual threads in flight, and times pinned</li>
+ *     <li><code>lostResponses</code> - value is the number of responses not received within the correlation timeout</li>
+ *     <li><code>concurrency</code>, <code>throughput</code>, <code>meanLatency</code>, <code>littlesLawConcurrency</code> -
+ *     value is the closed loop concurrency, requests per second, mean latency in ns and throughput times mean latency</li>
+ *     <li><code>summary</code> - value is the latency at that percentile for that run in us</li>
+ *     <li><code>variation</code> - value is the % variation between runs at that percentile</li>
+ *     <li><code>outlierRun</code> - value is 1 if the run will be repeated, otherwise 0</li>
+ *     <li><code>runToRunMedian</code>, <code>runToRunMAD</code>, <code>runToRunCV</code>, <code>runToRunLow</code>,
+ *     <code>runToRunHigh</code> - value is the median, median absolute deviation, coefficient of variation and
+ *     95% confidence interval of the mean across runs at that percentile, in us except the coefficient of variation,
+ *     count the number of runs</li>
+ *     <li><code>runToRunOutlier</code> - run is an outlier at that percentile</li>
+ * </ul>
+ * Values which could not be calculated are left empty.
+ */
+public class CsvJLBHReporter implements JLBHReporter {
+
+    public static final String HEADER = "event,run,name,count,percentile,value";
+
+    @NotNull
+    private final Appendable out;
+    private final StringBuilder sb = new StringBuilder();
+
+    /**
+     * @param out where to write the CSV, flushed at the end of each run if {@link Flushable}
+     */
+    public CsvJLBHReporter(@NotNull Appendable out) {
+        this.out = out;
+        sb.append(HEADER).append('\n');
+        write();
+    }
+
+    private static void appendName(StringBuilder sb, String name) {
+        if (name.indexOf(',') < 0 && name.indexOf('"') < 0 && name.indexOf('\n') < 0) {
+            sb.append(name);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < name.length(); i++) {
+            char ch = name.charAt(i);
+            if (ch == '"')
+                sb.append('"');
+            sb.append(ch);
+        }
+        sb.append('"');
+    }
+
+    @Override
+    public void warmedUp(long warmUpIterations, long durationMS) {
+        row("warmUp", 0, "", warmUpIterations, Double.NaN, durationMS);
+        write();
+    }
+
+    @Override
+    public void warmUpSteadyState(boolean steadyStateReached) {
+        row("warmUpSteadyState", 0, "", -1, Double.NaN, steadyStateReached ? 1 : 0);
+        write();
+    }
+
+    @Override
+    public void runHeader(int run, long runTimeMS, @NotNull LatencyDistributor latencyDistributor, boolean accountForCoordinatedOmission,
+                          int throughput, @NotNull TimeUnit throughputTimeUnit, long latencyBetweenTasksNS) {
+        row("runTime", run, String.valueOf(latencyDistributor), -1, Double.NaN, runTimeMS);
+        write();
+    }
+
+    @Override
+    public void endToEnd(int run, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+        histogram("endToEnd", run, "end to end", histogram, percentiles);
+    }
+
+    @Override
+    public void probe(int run, @NotNull String name, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+        histogram("probe", run, name, histogram, percentiles);
+    }
+
+    @Override
+    public void osJitter(int run, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+        histogram("osJitter", run, "OS Jitter", histogram, percentiles);
+    }
+
+    private void histogram(String event, int run, String name, Histogram histogram, double[] percentiles) {
+        final long count = histogram.totalCount();
+        final double[] values = histogram.getPercentiles(percentiles);
+        for (int i = 0; i < percentiles.length; i++)
+            row(event, run, name, count, percentiles[i], values[i]);
+        write();
+    }
+
+    @Override
+    public void perfCounters(int run, long iterations, @NotNull Map<String, Long> counts) {
+        counts.forEach((event, count) -> row("perfCounter", run, event, count, Double.NaN, (double) count / iterations));
+        write();
+    }
+
+    @Override
+    public void virtualThreads(int run, int maxInFlight, long pinnedCount) {
+        row("maxInFlight", run, "", -1, Double.NaN, maxInFlight);
+        row("pinned", run, "", -1, Double.NaN, pinnedCount);
+        write();
+    }
+
+    @Override
+    public void statistics(int run, @NotNull String name, @NotNull RunStatistics statistics) {
+        row("mean", run, name, statistics.count(), Double.NaN, statistics.meanNs());
+        row("stddev", run, name, statistics.count(), Double.NaN, statistics.stddevNs());
+        row("min", run, name, statistics.count(), Double.NaN, statistics.minNs());
+        write();
+    }
+
+    @Override
+    public void stageBreakdown(int run, @NotNull String name, double percentile, long messages, @NotNull Map<String, Double> shares) {
+        shares.forEach((stage, share) -> row("stageShare", run, name + ": " + stage, messages, percentile, share));
+        write();
+    }
+
+    @Override
+    public void lostResponses(int run, long lost) {
+        row("lostResponses", run, "", -1, Double.NaN, lost);
+        write();
+    }
+
+    @Override
+    public void convergence(int run, long samples, boolean converged, @NotNull Map<Double, Double> relativeHalfWidths) {
+        row("converged", run, "", samples, Double.NaN, converged ? 1 : 0);
+        relativeHalfWidths.forEach((percentile, halfWidth) -> row("relativeHalfWidth", run, "", samples, percentile, halfWidth));
+        write();
+    }
+
+    @Override
+    public void closedLoop(int run, int concurrency, double throughput, double meanLatencyNs, double littlesLawConcurrency) {
+        row("concurrency", run, "", -1, Double.NaN, concurrency);
+        row("throughput", run, "", -1, Double.NaN, throughput);
+        row("meanLatency", run, "", -1, Double.NaN, meanLatencyNs);
+        row("littlesLawConcurrency", run, "", -1, Double.NaN, littlesLawConcurrency);
+        write();
+    }
+
+    @Override
+    public void runComplete(int run) {
+        flush();
+    }
+
+    @Override
+    public void summary(@NotNull String label, int runs, @NotNull PercentileSummary summary) {
+        summary.forEachRow((percentile, values, variance) -> {
+            for (int i = 0; i < values.length; i++)
+                row("summary", i + 1, label, -1, percentile, values[i]);
+            row("variation", 0, label, -1, percentile, variance);
+        });
+        write();
+    }
+
+    @Override
+    public void outlierRun(int run, boolean repeated) {
+        row("outlierRun", run, "", -1, Double.NaN, repeated ? 1 : 0);
+        write();
+    }
+
+    @Override
+    public void runToRunSummary(@NotNull String label, @NotNull PercentileSummary summary, @NotNull int[] runNumbers) {
+        summary.forEachRunToRun((percentile, statistics) -> {
+            final int count = statistics.count();
+            row("runToRunMedian", 0, label, count, percentile, statistics.median());
+            row("runToRunMAD", 0, label, count, percentile, statistics.medianAbsoluteDeviation());
+            row("runToRunCV", 0, label, count, percentile, statistics.coefficientOfVariation());
+            row("runToRunLow", 0, label, count, percentile, statistics.confidenceLow());
+            row("runToRunHigh", 0, label, count, percentile, statistics.confidenceHigh());
+            for (int run : statistics.outlierRuns())
+                row("runToRunOutlier", runNumbers[run], label, count, percentile, Double.NaN);
+        });
+        write();
+    }
+
+    @Override
+    public void complete() {
+        flush();
+    }
+
+    private void row(String event, int run, String name, long count, double percentile, double value) {
+        sb.append(event).append(',');
+        if (run > 0)
+            sb.append(run);
+        sb.append(',');
+        appendName(sb, name);
+        sb.append(',');
+        if (count >= 0)
+            sb.append(count);
+        sb.append(',');
+        if (!Double.isNaN(percentile))
+            sb.append(percentile);
+        sb.append(',');
+        if (!Double.isNaN(value) && !Double.isInfinite(value))
+            sb.append(value);
+        sb.append('\n');
+    }
+
+    private void write() {
+        try {
+            out.append(sb);
+        } catch (IOException e) {
+            throw new IORuntimeException("Error writing CSV report", e);
+        }
+        sb.setLength(0);
+    }
+
+    private void flush() {
+        if (out instanceof Flushable) {
+            try {
+                ((Flushable) out).flush();
+            } catch (IOException e) {
+                throw new IORuntimeException("Error flushing CSV report", e);
+            }
+        }
+    }
+}
@@ -1,17 +1,21 @@
 package net.openhft.chronicle.jlbh.util;
 
 import net.openhft.chronicle.jlbh.JLBHResult;
+import net.openhft.chronicle.jlbh.RunStatistics;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Serializes JLBH result to CSV file. Useful for analytics.
@@ -22,7 +26,6 @@ public class JLBHResultSerializer {
     public static final String END_TO_END = "endToEnd";
     public static final String OS_JITTER = "OSJitter";
 
-
     public static void runResultToCSV(JLBHResult jlbhResult) throws IOException {
         runResultToCSV(jlbhResult, RESULT_CSV, jlbhResult.probeNames(), true);
     }
@@ -37,53 +40,108 @@ public class JLBHResultSerializer {
 
     public static void runResultToCSV(JLBHResult jlbhResult, String fileName, Iterable<String> namesOfProbes, boolean includeOSJitter) throws IOException {
         try (Writer pw = new BufferedWriter(new PrintWriter(Files.newOutputStream(Paths.get(fileName))))) {
-            writeHeader(pw);
+            // the columns follow the end to end result; the legacy columns are kept unless custom percentiles were used
+            final JLBHResult.RunResult lastEndToEnd = jlbhResult.endToEnd().summaryOfLastRun();
+            final double[] percentiles = customPercentiles(jlbhResult, lastEndToEnd.percentileValues().keySet());
+            final boolean statistics = lastEndToEnd.statistics().isPresent();
+            writeHeader(pw, percentiles, statistics);
 
             JLBHResult.ProbeResult probeResult = jlbhResult.endToEnd();
-            writeProbeResult(pw, END_TO_END, probeResult);
+            writeProbeResult(pw, END_TO_END, probeResult, percentiles, statistics);
 
             for (String probeName : namesOfProbes) {
                 Optional<JLBHResult.ProbeResult> optProbe = jlbhResult.probe(probeName);
-                optProbe.ifPresent(probe -> writeProbeResult(pw, probeName, probe));
+                optProbe.ifPresent(probe -> writeProbeResult(pw, probeName, probe, percentiles, statistics));
             }
             if (!includeOSJitter) return;
             Optional<JLBHResult.ProbeResult> osJitterResult = jlbhResult.osJitter();
-            osJitterResult.ifPresent(osJitterRes -> writeProbeResult(pw, OS_JITTER, osJitterRes));
+            osJitterResult.ifPresent(osJitterRes -> writeProbeResult(pw, OS_JITTER, osJitterRes, percentiles, statistics));
         }
     }
 
-    private static void writeProbeResult(Writer pw, String probeName, JLBHResult.ProbeResult probeResult) {
+    /**
+     * @return the percentiles of the run, or null for the legacy columns, which leave out any percentiles not
+     * calculated for the number of samples
+     */
+    @Nullable
+    private static double[] customPercentiles(JLBHResult jlbhResult, Set<Double> percentiles) {
+        boolean legacy = !jlbhResult.customPercentiles();
+        for (double percentile : percentiles)
+            legacy &= JLBHResult.RunResult.Percentile.of(percentile).isPresent();
+        return legacy ? null : percentiles.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    private static void writeProbeResult(Writer pw, String probeName, JLBHResult.ProbeResult probeResult,
+                                         @Nullable double[] percentiles, boolean statistics) {
         try {
             JLBHResult.@NotNull RunResult runResult = probeResult.summaryOfLastRun();
-            writeRow(probeName, pw, runResult);
+            writeRow(probeName, pw, runResult, percentiles, statistics);
         } catch (IOException e) {
             throw new RuntimeException("Error writing probe results: " + probeName, e);
         }
     }
 
-    private static void writeRow(String probeName, Writer pw, JLBHResult.RunResult runResult) throws IOException {
+    private static void writeRow(String probeName, Writer pw, JLBHResult.RunResult runResult,
+                                 @Nullable double[] percentiles, boolean statistics) throws IOException {
         writeValue(pw, probeName);
-        writeValue(pw, runResult.get50thPercentile());
-        writeValue(pw, runResult.get90thPercentile());
-        writeValue(pw, runResult.get99thPercentile());
-        writeValue(pw, runResult.get999thPercentile());
-        writeValue(pw, runResult.get9999thPercentile());
-        writeValue(pw, runResult.getWorst());
+        if (percentiles == null) {
+            writeValue(pw, runResult.get50thPercentile());
+            writeValue(pw, runResult.get90thPercentile());
+            writeValue(pw, runResult.get99thPercentile());
+            writeValue(pw, runResult.get999thPercentile());
+            writeValue(pw, runResult.get9999thPercentile());
+            writeValue(pw, runResult.getWorst());
+        } else {
+            for (double percentile : percentiles)
+                writeValue(pw, runResult.percentileValues().get(percentile));
+        }
+        if (statistics) {
+            final RunStatistics runStatistics = runResult.statistics().orElse(null);
+            if (runStatistics == null) {
+                for (int i = 0; i < 4; i++)
+                    writeValue(pw, "");
+            } else {
+                writeValue(pw, Long.toString(runStatistics.count()));
+                writeValue(pw, nanos(runStatistics.meanNs()));
+                writeValue(pw, nanos(runStatistics.stddevNs()));
+                writeValue(pw, nanos(runStatistics.minNs()));
+            }
+        }
         pw.write("\n");
     }
 
-    private static void writeHeader(Writer pw) throws IOException {
+    private static String nanos(double nanos) {
+        return Double.isNaN(nanos) ? "" : Long.toString(Math.round(nanos));
+    }
+
+    private static void writeHeader(Writer pw, @Nullable double[] percentiles, boolean statistics) throws IOException {
         writeValue(pw, "");
-        writeValue(pw, "50th p-le");
-        writeValue(pw, "90th p-le");
-        writeValue(pw, "99th p-le");
-        writeValue(pw, "999th p-le");
-        writeValue(pw, "9999th p-le");
-        writeValue(pw, "Worst");
+        if (percentiles == null) {
+            writeValue(pw, "50th p-le");
+            writeValue(pw, "90th p-le");
+            writeValue(pw, "99th p-le");
+            writeValue(pw, "999th p-le");
+            writeValue(pw, "9999th p-le");
+            writeValue(pw, "Worst");
+        } else {
+            for (double percentile : percentiles)
+                writeValue(pw, percentile == 1.0 ? "Worst" : percentileLabel(percentile));
+        }
+        if (statistics) {
+            writeValue(pw, "count");
+            writeValue(pw, "mean");
+            writeValue(pw, "stddev");
+            writeValue(pw, "min");
+        }
         pw.append("\n");
 
     }
 
+    private static String percentileLabel(double percentile) {
+        // e.g. 0.995 -> 99.5th p-le
+        return BigDecimal.valueOf(percentile).movePointRight(2).stripTrailingZeros().toPlainString() + "th p-le";
+    }
+
     private static void writeValue(Writer pw, Duration runResult) throws IOException {
         if (runResult != null) {
             pw.write(Long.toString(runResult.toNanos()));
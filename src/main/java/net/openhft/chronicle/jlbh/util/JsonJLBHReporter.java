@@ -0,0 +1,390 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh.util;
+
+import net.openhft.chronicle.core.io.IORuntimeException;
+import net.openhft.chronicle.core.util.Histogram;
+import net.openhft.chronicle.jlbh.JLBHReporter;
+import net.openhft.chronicle.jlbh.LatencyDistributor;
+import net.openhft.chronicle.jlbh.PercentileSummary;
+import net.openhft.chronicle.jlbh.RunStatistics;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the results as JSON, one object per line (JSON Lines), each with an <code>event</code> field naming the
+ * {@link JLBHReporter} callback it came from.
+ * <p>
+ * Histogram percentiles are in nanoseconds, summary values are in microseconds as per the text summary, apart from
+ * the count in its <code>statistics</code>.
+ * Percentiles with too few samples to be calculated are written as <code>null</code>.
+ */
+public class JsonJLBHReporter implements JLBHReporter {
+
+    @NotNull
+    private final Appendable out;
+    private final StringBuilder sb = new StringBuilder();
+
+    /**
+     * @param out where to write the JSON, flushed at the end of each run if {@link Flushable}
+     */
+    public JsonJLBHReporter(@NotNull Appendable out) {
+        this.out = out;
+    }
+
+    static void appendString(StringBuilder sb, CharSequence cs) {
+        sb.append('"');
+        for (int i = 0; i < cs.length(); i++) {
+            char ch = cs.charAt(i);
+            switch (ch) {
+                case '"':
+                case '\\':
+                    sb.append('\\').append(ch);
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (ch < ' ')
+                        sb.append(String.format("\\u%04x", (int) ch));
+                    else
+                        sb.append(ch);
+            }
+        }
+        sb.append('"');
+    }
+
+    static void appendNumber(StringBuilder sb, double d) {
+        if (Double.isNaN(d) || Double.isInfinite(d))
+            sb.append("null");
+        else
+            sb.append(d);
+    }
+
+    @Override
+    public void warmedUp(long warmUpIterations, long durationMS) {
+        start("warmedUp");
+        sb.append(",\"warmUpIterations\":").append(warmUpIterations);
+        sb.append(",\"durationMS\":").append(durationMS);
+        end();
+    }
+
+    @Override
+    public void warmUpSteadyState(boolean steadyStateReached) {
+        start("warmUpSteadyState");
+        sb.append(",\"steadyStateReached\":").append(steadyStateReached);
+        end();
+    }
+
+    @Override
+    public void runHeader(int run, long runTimeMS, @NotNull LatencyDistributor latencyDistributor, boolean accountForCoordinatedOmission,
+                          int throughput, @NotNull TimeUnit throughputTimeUnit, long latencyBetweenTasksNS) {
+        start("runHeader");
+        sb.append(",\"run\":").append(run);
+        sb.append(",\"runTimeMS\":").append(runTimeMS);
+        sb.append(",\"distribution\":");
+        appendString(sb, String.valueOf(latencyDistributor));
+        sb.append(",\"accountForCoordinatedOmission\":").append(accountForCoordinatedOmission);
+        sb.append(",\"throughput\":").append(throughput);
+        sb.append(",\"throughputTimeUnit\":\"").append(throughputTimeUnit).append('"');
+        sb.append(",\"latencyBetweenTasksNS\":").append(latencyBetweenTasksNS);
+        end();
+    }
+
+    @Override
+    public void endToEnd(int run, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+        histogram("endToEnd", run, "end to end", histogram, percentiles);
+    }
+
+    @Override
+    public void probe(int run, @NotNull String name, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+        histogram("probe", run, name, histogram, percentiles);
+    }
+
+    @Override
+    public void osJitter(int run, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+        histogram("osJitter", run, "OS Jitter", histogram, percentiles);
+    }
+
+    private void histogram(String event, int run, String name, Histogram histogram, double[] percentiles) {
+        final long count = histogram.totalCount();
+        final double[] values = histogram.getPercentiles(percentiles);
+        start(event);
+        sb.append(",\"run\":").append(run);
+        sb.append(",\"name\":");
+        appendString(sb, name);
+        sb.append(",\"count\":").append(count);
+        sb.append(",\"percentilesNS\":{");
+        for (int i = 0; i < percentiles.length; i++) {
+            if (i > 0)
+                sb.append(',');
+            sb.append('"').append(percentiles[i]).append("\":");
+            appendNumber(sb, values[i]);
+        }
+        sb.append('}');
+        end();
+    }
+
+    @Override
+    public void perfCounters(int run, long iterations, @NotNull Map<String, Long> counts) {
+        start("perfCounters");
+        sb.append(",\"run\":").append(run);
+        sb.append(",\"iterations\":").append(iterations);
+        sb.append(",\"counts\":{");
+        final int start = sb.length();
+        counts.forEach((event, count) -> {
+            if (sb.length() > start)
+                sb.append(',');
+            appendString(sb, event);
+            sb.append(':').append(count);
+        });
+        sb.append('}');
+        end();
+    }
+
+    @Override
+    public void virtualThreads(int run, int maxInFlight, long pinnedCount) {
+        start("virtualThreads");
+        sb.append(",\"run\":").append(run);
+        sb.append(",\"maxInFlight\":").append(maxInFlight);
+        sb.append(",\"pinnedCount\":").append(pinnedCount);
+        end();
+    }
+
+    @Override
+    public void statistics(int run, @NotNull String name, @NotNull RunStatistics statistics) {
+        start("statistics");
+        sb.append(",\"run\":").append(run);
+        sb.append(",\"name\":");
+        appendString(sb, name);
+        sb.append(",\"count\":").append(statistics.count());
+        sb.append(",\"meanNS\":");
+        appendNumber(sb, statistics.meanNs());
+        sb.append(",\"stddevNS\":");
+        appendNumber(sb, statistics.stddevNs());
+        sb.append(",\"minNS\":");
+        appendNumber(sb, statistics.minNs());
+        end();
+    }
+
+    @Override
+    public void stageBreakdown(int run, @NotNull String name, double percentile, long messages, @NotNull Map<String, Double> shares) {
+        start("stageBreakdown");
+        sb.append(",\"run\":").append(run);
+        sb.append(",\"name\":");
+        appendString(sb, name);
+        sb.append(",\"percentile\":").append(percentile);
+        sb.append(",\"messages\":").append(messages);
+        sb.append(",\"shares\":{");
+        final int start = sb.length();
+        shares.forEach((stage, share) -> {
+            if (sb.length() > start)
+                sb.append(',');
+            appendString(sb, stage);
+            sb.append(':');
+            appendNumber(sb, share);
+        });
+        sb.append('}');
+        end();
+    }
+
+    @Override
+    public void lostResponses(int run, long lost) {
+        start("lostResponses");
+        sb.append(",\"run\":").append(run);
+        sb.append(",\"lost\":").append(lost);
+        end();
+    }
+
+    @Override
+    public void convergence(int run, long samples, boolean converged, @NotNull Map<Double, Double> relativeHalfWidths) {
+        start("convergence");
+        sb.append(",\"run\":").append(run);
+        sb.append(",\"samples\":").append(samples);
+        sb.append(",\"converged\":").append(converged);
+        sb.append(",\"relativeHalfWidths\":{");
+        final int start = sb.length();
+        relativeHalfWidths.forEach((percentile, halfWidth) -> {
+            if (sb.length() > start)
+                sb.append(',');
+            sb.append('"').append(percentile).append("\":");
+            appendNumber(sb, halfWidth);
+        });
+        sb.append('}');
+        end();
+    }
+
+    @Override
+    public void closedLoop(int run, int concurrency, double throughput, double meanLatencyNs, double littlesLawConcurrency) {
+        start("closedLoop");
+        sb.append(",\"run\":").append(run);
+        sb.append(",\"concurrency\":").append(concurrency);
+        sb.append(",\"throughput\":");
+        appendNumber(sb, throughput);
+        sb.append(",\"meanLatencyNs\":");
+        appendNumber(sb, meanLatencyNs);
+        sb.append(",\"littlesLawConcurrency\":");
+        appendNumber(sb, littlesLawConcurrency);
+        end();
+    }
+
+    @Override
+    public void profile(int run, @NotNull Path profile) {
+        start("profile");
+        sb.append(",\"run\":").append(run);
+        sb.append(",\"path\":");
+        appendString(sb, profile.toString());
+        end();
+    }
+
+    @Override
+    public void runComplete(int run) {
+        start("runComplete");
+        sb.append(",\"run\":").append(run);
+        end();
+        flush();
+    }
+
+    @Override
+    public void summary(@NotNull String label, int runs, @NotNull PercentileSummary summary) {
+        start("summary");
+        sb.append(",\"label\":");
+        appendString(sb, label);
+        sb.append(",\"runs\":").append(runs);
+        sb.append(",\"rows\":[");
+        final int start = sb.length();
+        summary.forEachRow((percentile, values, variance) -> {
+            if (sb.length() > start)
+                sb.append(',');
+            sb.append("{\"percentile\":").append(percentile);
+            sb.append(",\"valuesUS\":[");
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0)
+                    sb.append(',');
+                appendNumber(sb, values[i]);
+            }
+            sb.append("],\"variation\":");
+            appendNumber(sb, variance);
+            sb.append('}');
+        });
+        sb.append("],\"statistics\":[");
+        final int statisticsStart = sb.length();
+        summary.forEachStatistic(new double[summary.runs()], (statistic, values, variation) -> {
+            if (sb.length() > statisticsStart)
+                sb.append(',');
+            sb.append("{\"statistic\":\"").append(statistic).append('"');
+            sb.append(",\"values\":[");
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0)
+                    sb.append(',');
+                appendNumber(sb, values[i]);
+            }
+            sb.append("],\"variation\":");
+            appendNumber(sb, variation);
+            sb.append('}');
+        });
+        sb.append(']');
+        end();
+    }
+
+    @Override
+    public void outlierRun(int run, boolean repeated) {
+        start("outlierRun");
+        sb.append(",\"run\":").append(run);
+        sb.append(",\"repeated\":").append(repeated);
+        end();
+    }
+
+    @Override
+    public void runToRunSummary(@NotNull String label, @NotNull PercentileSummary summary, @NotNull int[] runNumbers) {
+        start("runToRunSummary");
+        sb.append(",\"label\":");
+        appendString(sb, label);
+        sb.append(",\"rows\":[");
+        final int start = sb.length();
+        summary.forEachRunToRun((percentile, statistics) -> {
+            if (sb.length() > start)
+                sb.append(',');
+            sb.append("{\"percentile\":").append(percentile);
+            sb.append(",\"runs\":").append(statistics.count());
+            sb.append(",\"medianUS\":");
+            appendNumber(sb, statistics.median());
+            sb.append(",\"madUS\":");
+            appendNumber(sb, statistics.medianAbsoluteDeviation());
+            sb.append(",\"coefficientOfVariation\":");
+            appendNumber(sb, statistics.coefficientOfVariation());
+            sb.append(",\"confidenceIntervalUS\":[");
+            appendNumber(sb, statistics.confidenceLow());
+            sb.append(',');
+            appendNumber(sb, statistics.confidenceHigh());
+            sb.append("],\"outlierRuns\":[");
+            final int[] outlierRuns = statistics.outlierRuns();
+            for (int i = 0; i < outlierRuns.length; i++) {
+                if (i > 0)
+                    sb.append(',');
+                sb.append(runNumbers[outlierRuns[i]]);
+            }
+            sb.append("]}");
+        });
+        sb.append(']');
+        end();
+    }
+
+    @Override
+    public void complete() {
+        start("complete");
+        end();
+        flush();
+    }
+
+    private void start(String event) {
+        sb.setLength(0);
+        sb.append("{\"event\":\"").append(event).append('"');
+    }
+
+    private void end() {
+        sb.append("}\n");
+        try {
+            out.append(sb);
+        } catch (IOException e) {
+            throw new IORuntimeException("Error writing JSON report", e);
+        }
+    }
+
+    private void flush() {
+        if (out instanceof Flushable) {
+            try {
+                ((Flushable) out).flush();
+            } catch (IOException e) {
+                throw new IORuntimeException("Error flushing JSON report", e);
+            }
+        }
+    }
+}
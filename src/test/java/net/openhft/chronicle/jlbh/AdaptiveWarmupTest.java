@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import net.openhft.chronicle.core.util.NanoSampler;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.options;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveWarmupTest {
+
+    private static final int WINDOW = 100;
+
+    @Test
+    public void shouldWaitForCompilationToStop() {
+        final AtomicLong compilationTimeMS = new AtomicLong();
+        final AdaptiveWarmup warmup = new AdaptiveWarmup(WINDOW, 0.1, new Histogram(35, 8, 100), compilationTimeMS::get);
+
+        // first window has nothing to compare to
+        assertFalse(sampleWindow(warmup, 1_000));
+        compilationTimeMS.addAndGet(5);
+        assertFalse(sampleWindow(warmup, 1_000));
+        assertTrue(sampleWindow(warmup, 1_000));
+        assertTrue(warmup.steadyState());
+    }
+
+    @Test
+    public void shouldWaitForLatenciesToSettle() {
+        final AdaptiveWarmup warmup = new AdaptiveWarmup(WINDOW, 0.1, new Histogram(35, 8, 100), () -> 0);
+
+        assertFalse(sampleWindow(warmup, 10_000));
+        assertFalse(sampleWindow(warmup, 5_000));
+        assertFalse(sampleWindow(warmup, 2_000));
+        assertTrue(sampleWindow(warmup, 2_050));
+    }
+
+    private static boolean sampleWindow(AdaptiveWarmup warmup, long latencyNs) {
+        for (int i = 0; i < WINDOW - 1; i++)
+            assertFalse(warmup.sample(latencyNs));
+        return warmup.sample(latencyNs);
+    }
+
+    @Test
+    public void shouldStopAtTheMaximumIfNotSteady() {
+        final JLBHTask slowingDown = new JLBHTask() {
+            private JLBH jlbh;
+            private NanoSampler probe;
+            private long latency = 1_000;
+
+            @Override
+            public void init(JLBH jlbh) {
+                this.jlbh = jlbh;
+                this.probe = jlbh.addProbe("A");
+            }
+
+            @Override
+            public void run(long startTimeNS) {
+                // never settles during warmup
+                latency += latency / 100;
+                if (latency > 1_000_000_000)
+                    latency = 1_000;
+                jlbh.sample(latency);
+                probe.sampleNanos(latency);
+            }
+        };
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new JLBH(options().jlbhTask(slowingDown).adaptiveWarmUp(50, 0.05, 2_000), new PrintStream(baos), null).start();
+
+        final String text = baos.toString();
+        assertThat(text, containsString("Warm up complete (2000 iterations took "));
+        assertThat(text, containsString("WARNING: Warm up did not reach a steady state"));
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class AllocationFreeReportingTest {
+
+    @Test
+    public void shouldFormatTheSameAsStringFormat() {
+        final TextFormatter text = new TextFormatter();
+        final Random random = new Random(1);
+        final double[] values = {0, -0.0, 0.005, 0.125, 1.005, 2.675, 0.1, 8.07, 12.456, 99.995, 1e-9, 123456.785,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NaN, 1e300};
+        for (double value : values)
+            for (int decimals = 0; decimals <= 3; decimals++)
+                assertFixed(text, value, decimals);
+        for (int i = 0; i < 100_000; i++) {
+            final double value = random.nextInt(1_000_000) / 1e3 + (random.nextBoolean() ? 0 : random.nextDouble() / 1e3);
+            assertFixed(text, value, 1 + i % 3);
+        }
+        for (double value : new double[]{0, 999.995, 1_000, -1_234_567.125, 12_345_678.9, 1e300})
+            for (int decimals = 0; decimals <= 3; decimals++) {
+                text.appendGroupedFixed(value, decimals);
+                assertEquals(String.format("%,." + decimals + "f", value), text.toString());
+                text.clear();
+            }
+        for (long l : new long[]{0, 999, 1_000, -1_234_567, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            text.appendGrouped(l);
+            assertEquals(String.format("%,d", l), text.toString());
+            text.clear();
+        }
+        for (long ms : new long[]{0, 5, 50, 1_000, 1_500, 12_345, 9_999_999_999L, 10_000_000_000L}) {
+            text.appendSeconds(ms);
+            assertEquals(Double.toString(ms / 1000.0), text.toString());
+            text.clear();
+        }
+        for (double percentile : new double[]{0.5, 0.9, 0.99, 0.999, 0.9999, 0.99999, 0.999999, 0.0000001}) {
+            text.appendPercentile(percentile);
+            assertEquals(Double.toString(Math.round(percentile * 1e6) / 1e4), text.toString());
+            text.clear();
+        }
+    }
+
+    private static void assertFixed(TextFormatter text, double value, int decimals) {
+        text.appendFixed(value, decimals);
+        assertEquals(value + " " + decimals, String.format("%." + decimals + "f", value), text.toString());
+        text.clear();
+    }
+
+    @Test
+    public void shouldWriteTheSameSummary() {
+        final PercentileSummary summary = summary();
+        final StringBuilder expected = new StringBuilder();
+        TextJLBHReporter.appendSummary(expected, "test", 3, summary);
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new TextJLBHReporter(new PrintStream(baos), true).summary("test", 3, summary);
+        assertEquals(expected.toString(), baos.toString());
+    }
+
+    @Test
+    public void shouldWriteTheSameLines() {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final TextJLBHReporter reporter = new TextJLBHReporter(new PrintStream(baos), true);
+        reportLines(reporter, 1);
+        final String n = System.lineSeparator();
+        assertEquals(String.format("%-48s%,.2f%n", "cycles/iteration (2,000,000)", 2_000.0)
+                        + String.format("%-48s%,.2f%n", "instructions/iteration (3,000,000)", 3_000.0)
+                        + String.format("%-48s%.2f%n", "instructions/cycle", 1.5)
+                        + "Virtual threads: max in flight 1,200, pinned 3 times" + n
+                        + "Stage breakdown (order) of 1,090 messages at or over the 99.0 percentile: decode 25.0% send 75.0%" + n
+                        + "Converged after 12,000 samples, 95% confidence interval: 99.0 +/-1.25% 99.9 +/-4.50%" + n
+                        + String.format("Closed loop: concurrency %,d, throughput %,.0f/s, mean latency %,.3f us, Little's law concurrency %,.2f (%.1f%%)%n",
+                        4, 1_234_567.8, 3.2407, 4.0001, 100.0025),
+                baos.toString());
+    }
+
+    @Test
+    public void shouldNotAllocate() {
+        final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final TextJLBHReporter reporter = new TextJLBHReporter(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }), true);
+        final Histogram histogram = new Histogram(35, 8, 100);
+        for (int i = 1; i <= 10_000; i++)
+            histogram.sampleNanos(i * 7L);
+        final PercentileSummary summary = summary();
+
+        for (int i = 0; i < 20_000; i++)
+            reportRun(reporter, histogram, summary, i);
+        // the first read may allocate, so measure what a pair of reads costs without reporting in between
+        final long baseline = -threadMXBean.getThreadAllocatedBytes(threadId) + threadMXBean.getThreadAllocatedBytes(threadId);
+        final long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1_000; i++)
+            reportRun(reporter, histogram, summary, i);
+        final long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - start;
+        assertEquals(baseline, allocated);
+    }
+
+    private static void reportRun(TextJLBHReporter reporter, Histogram histogram, PercentileSummary summary, int run) {
+        reporter.runHeader(run, 1_234 + run, LatencyDistributors.NORMAL, true, 1_000_000, TimeUnit.SECONDS, 1_000);
+        reporter.endToEnd(run, histogram, PERCENTILES);
+        reporter.probe(run, "probe", histogram, PERCENTILES);
+        reporter.osJitter(run, histogram, PERCENTILES);
+        reportLines(reporter, run);
+        reporter.runComplete(run);
+        reporter.summary("end to end", 3, summary);
+    }
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999, 0.9999, 1};
+    private static final Map<String, Long> PERF_COUNTS = new LinkedHashMap<>();
+    private static final Map<String, Double> STAGE_SHARES = new LinkedHashMap<>();
+    private static final Map<Double, Double> HALF_WIDTHS = new LinkedHashMap<>();
+
+    static {
+        PERF_COUNTS.put("cycles", 2_000_000L);
+        PERF_COUNTS.put("instructions", 3_000_000L);
+        STAGE_SHARES.put("decode", 0.25);
+        STAGE_SHARES.put("send", 0.75);
+        HALF_WIDTHS.put(0.99, 0.0125);
+        HALF_WIDTHS.put(0.999, 0.045);
+    }
+
+    // the lines written by perf counters, virtual threads, stage breakdown, convergence and closed loop mode
+    private static void reportLines(TextJLBHReporter reporter, int run) {
+        reporter.perfCounters(run, 1_000, PERF_COUNTS);
+        reporter.virtualThreads(run, 1_200, 3);
+        reporter.stageBreakdown(run, "order", 0.99, 1_090, STAGE_SHARES);
+        reporter.convergence(run, 12_000, true, HALF_WIDTHS);
+        reporter.closedLoop(run, 4, 1_234_567.8, 3_240.7, 4.0001);
+    }
+
+    private static PercentileSummary summary() {
+        return new PercentileSummary(true, runs(), new double[]{0.5, 0.9, 0.99, 0.999, 1});
+    }
+
+    private static List<double[]> runs() {
+        final List<double[]> runs = new ArrayList<>();
+        runs.add(new double[]{8_070, 11_660, 12_460, 12_560, 12_560});
+        runs.add(new double[]{8_070, 11_660, 12_460, 12_560, 12_560});
+        runs.add(new double[]{6_100, 9_710, 10_510, 10_610, 10_610});
+        return runs;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClosedLoopTest {
+    private static final long DELAY_NS = 50_000;
+
+    @Test
+    public void shouldKeepConcurrencyInFlight() throws InterruptedException {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final BlockingQueue<Long> requests = new ArrayBlockingQueue<>(64);
+        final List<double[]> closedLoop = new ArrayList<>();
+        final JLBHTask task = new JLBHTask() {
+            private Thread responder;
+
+            @Override
+            public void init(JLBH jlbh) {
+                // responds to each request a fixed time after it started
+                responder = new Thread(() -> {
+                    try {
+                        while (true) {
+                            final long startTimeNS = requests.take();
+                            long remaining;
+                            while ((remaining = startTimeNS + DELAY_NS - System.nanoTime()) > 0)
+                                LockSupport.parkNanos(remaining);
+                            inFlight.decrementAndGet();
+                            jlbh.sample(System.nanoTime() - startTimeNS);
+                        }
+                    } catch (InterruptedException expected) {
+                        // stopped
+                    }
+                });
+                responder.setDaemon(true);
+                responder.start();
+            }
+
+            @Override
+            public void run(long startTimeNS) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                requests.add(startTimeNS);
+            }
+
+            @Override
+            public void complete() {
+                responder.interrupt();
+            }
+        };
+        final JLBHOptions options = new JLBHOptions()
+                .warmUpIterations(500)
+                .iterations(2_000)
+                .recordOSJitter(false)
+                .closedLoop(1, 4)
+                .jlbhTask(task)
+                .addReporter(new JLBHReporter() {
+                    @Override
+                    public void closedLoop(int run, int concurrency, double throughput, double meanLatencyNs, double littlesLawConcurrency) {
+                        closedLoop.add(new double[]{concurrency, throughput, meanLatencyNs, littlesLawConcurrency});
+                    }
+                });
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new JLBH(options, new PrintStream(baos), null).start();
+
+        assertTrue(String.valueOf(maxInFlight), maxInFlight.get() > 1 && maxInFlight.get() <= 4);
+        assertEquals(2, closedLoop.size());
+        assertEquals(1, closedLoop.get(0)[0], 0);
+        assertEquals(4, closedLoop.get(1)[0], 0);
+        for (double[] level : closedLoop) {
+            assertTrue(Arrays.toString(level), level[2] >= DELAY_NS);
+            assertEquals(level[1] * level[2] / 1e9, level[3], 1e-9);
+            // can't be more than the concurrency, it is less when requests aren't issued promptly e.g. on a busy machine
+            assertTrue(Arrays.toString(level), level[3] > 0 && level[3] <= level[0] * 1.01);
+        }
+        assertThat(baos.toString(), containsString("Closed loop: concurrency 4, "));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequireOneRunPerConcurrencyLevel() {
+        new JLBH(new JLBHOptions().closedLoop(1, 2).runs(3).jlbhTask(new JLBHDeterministicFixtures.PredictableJLBHTask()));
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class ContinuousRunTest {
+
+    private static final int ITERATIONS = 2_000;
+    private static final int RUNS = 3;
+    private static final long INTERVAL_NS = 10_000;
+
+    @Test
+    public void shouldCarryOnTheScheduleAcrossRuns() {
+        final SlowTask task = new SlowTask();
+        final List<Long> counts = new CopyOnWriteArrayList<>();
+        final JLBHOptions options = new JLBHOptions()
+                .warmUpIterations(500)
+                .iterations(ITERATIONS)
+                .runs(RUNS)
+                .throughput((int) (TimeUnit.SECONDS.toNanos(1) / INTERVAL_NS))
+                .accountForCoordinatedOmission(true)
+                .recordOSJitter(false)
+                .continuous(true)
+                .addReporter(new JLBHReporter() {
+                    @Override
+                    public void endToEnd(int run, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+                        counts.add(histogram.totalCount());
+                    }
+                })
+                .jlbhTask(task);
+        new JLBH(options, new PrintStream(new ByteArrayOutputStream()), null).start();
+
+        assertEquals(RUNS * ITERATIONS, task.count);
+        // the task is slower than the interval, so every start time is on the schedule, including the first of each run
+        for (int i = 1; i < task.count; i++)
+            assertEquals("iteration " + i, INTERVAL_NS, task.startTimes[i] - task.startTimes[i - 1]);
+        for (long count : counts)
+            assertEquals(ITERATIONS, count);
+        assertEquals(RUNS, counts.size());
+    }
+
+    @Test
+    public void shouldCutOffTheStatisticsWithTheHistogram() throws InterruptedException {
+        final ResponderTask task = new ResponderTask();
+        final List<Long> counts = new CopyOnWriteArrayList<>();
+        final List<Long> statisticsCounts = new CopyOnWriteArrayList<>();
+        final JLBHOptions options = new JLBHOptions()
+                .warmUpIterations(500)
+                .iterations(20_000)
+                .runs(RUNS)
+                .throughput(1_000_000)
+                .accountForCoordinatedOmission(false)
+                .recordOSJitter(false)
+                .statistics(true)
+                .continuous(true)
+                .addReporter(new JLBHReporter() {
+                    @Override
+                    public void endToEnd(int run, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+                        counts.add(histogram.totalCount());
+                    }
+
+                    @Override
+                    public void statistics(int run, @NotNull String name, @NotNull RunStatistics statistics) {
+                        statisticsCounts.add(statistics.count());
+                    }
+                })
+                .jlbhTask(task);
+        task.responder.start();
+        try {
+            new JLBH(options, new PrintStream(new ByteArrayOutputStream()), null).start();
+        } finally {
+            task.responder.interrupt();
+            task.responder.join();
+        }
+
+        // the responses still in flight as a run ends are counted by both in the next run
+        assertEquals(counts, statisticsCounts);
+        assertEquals(RUNS, counts.size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotSupportClosedLoop() {
+        new JLBH(new JLBHOptions().continuous(true).closedLoop(1, 2).jlbhTask(new SlowTask())).start();
+    }
+
+    // samples on another thread, as a response would be, so runs end while responses are being sampled
+    private static final class ResponderTask implements JLBHTask {
+        private final BlockingQueue<Long> startTimes = new ArrayBlockingQueue<>(1 << 16);
+        private JLBH jlbh;
+        final Thread responder = new Thread(() -> {
+            try {
+                while (true)
+                    jlbh.sample(System.nanoTime() - startTimes.take());
+            } catch (InterruptedException expected) {
+                // the benchmark is over
+            }
+        }, "responder");
+
+        @Override
+        public void init(JLBH jlbh) {
+            this.jlbh = jlbh;
+        }
+
+        @Override
+        public void run(long startTimeNS) {
+            startTimes.add(startTimeNS);
+        }
+    }
+
+    private static final class SlowTask implements JLBHTask {
+        final long[] startTimes = new long[RUNS * ITERATIONS];
+        int count;
+        private JLBH jlbh;
+        private boolean warmedUp;
+
+        @Override
+        public void init(JLBH jlbh) {
+            this.jlbh = jlbh;
+        }
+
+        @Override
+        public void warmedUp() {
+            warmedUp = true;
+        }
+
+        @Override
+        public void run(long startTimeNS) {
+            if (warmedUp && count < startTimes.length)
+                startTimes[count++] = startTimeNS;
+            final long end = System.nanoTime() + 2 * INTERVAL_NS;
+            while (System.nanoTime() < end) {
+                // busy wait, so the benchmark is always behind its schedule
+            }
+            jlbh.sample(System.nanoTime() - startTimeNS);
+        }
+    }
+}
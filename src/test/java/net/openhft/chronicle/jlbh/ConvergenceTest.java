@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class ConvergenceTest {
+
+    private static final int ITERATIONS = 1_000_000;
+
+    @Test
+    public void shouldEndARunOnceThePercentilesConverge() {
+        final RecordingReporter reporter = new RecordingReporter();
+        new JLBH(options(0.01).addReporter(reporter), new PrintStream(new ByteArrayOutputStream()), null).start();
+
+        assertEquals(3, reporter.counts.size());
+        for (int run = 0; run < 3; run++) {
+            assertTrue(reporter.converged.get(run));
+            final long count = reporter.counts.get(run);
+            assertTrue(String.valueOf(count), count >= ConvergenceMonitor.MIN_BATCHES * 1_000 && count < ITERATIONS);
+            assertTrue(reporter.samples.get(run) <= count);
+            for (double halfWidth : reporter.halfWidths.get(run).values())
+                assertTrue(String.valueOf(halfWidth), halfWidth <= 0.01);
+            assertArrayEquals(new Double[]{0.5, 0.9}, reporter.halfWidths.get(run).keySet().toArray());
+        }
+    }
+
+    @Test
+    public void shouldRunEveryIterationIfThePercentilesDoNotConverge() {
+        final RecordingReporter reporter = new RecordingReporter();
+        new JLBH(options(1e-9).iterations(20_000).addReporter(reporter), new PrintStream(new ByteArrayOutputStream()), null).start();
+
+        assertEquals(3, reporter.counts.size());
+        for (int run = 0; run < 3; run++) {
+            assertFalse(reporter.converged.get(run));
+            assertEquals(20_000, (long) reporter.counts.get(run));
+            assertEquals(20_000, (long) reporter.samples.get(run));
+        }
+    }
+
+    @Test
+    public void shouldEstimateStudentT() {
+        assertEquals(2.262, ConvergenceMonitor.studentT95(9), 0.005);
+        assertEquals(2.042, ConvergenceMonitor.studentT95(30), 0.002);
+        assertEquals(1.960, ConvergenceMonitor.studentT95(100_000), 0.001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTheWorstPercentile() {
+        new JLBHOptions().convergence(0.01, 0.99, 1.0);
+    }
+
+    @NotNull
+    private static JLBHOptions options(double tolerance) {
+        return new JLBHOptions()
+                .warmUpIterations(500)
+                .iterations(ITERATIONS)
+                .runs(3)
+                .throughput(1_000_000)
+                .accountForCoordinatedOmission(false)
+                .recordOSJitter(false)
+                .convergence(tolerance, 0.5, 0.9)
+                .jlbhTask(new UniformLatencyTask());
+    }
+
+    private static final class UniformLatencyTask implements JLBHTask {
+        private final Random random = new Random(1);
+        private JLBH jlbh;
+
+        @Override
+        public void init(JLBH jlbh) {
+            this.jlbh = jlbh;
+        }
+
+        @Override
+        public void run(long startTimeNS) {
+            jlbh.sample(1_000 + random.nextInt(1_000));
+        }
+    }
+
+    private static final class RecordingReporter implements JLBHReporter {
+        final List<Long> counts = new CopyOnWriteArrayList<>();
+        final List<Long> samples = new CopyOnWriteArrayList<>();
+        final List<Boolean> converged = new CopyOnWriteArrayList<>();
+        final List<Map<Double, Double>> halfWidths = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void endToEnd(int run, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+            counts.add(histogram.totalCount());
+        }
+
+        @Override
+        public void convergence(int run, long samples, boolean converged, @NotNull Map<Double, Double> relativeHalfWidths) {
+            this.samples.add(samples);
+            this.converged.add(converged);
+            this.halfWidths.add(relativeHalfWidths);
+        }
+    }
+}
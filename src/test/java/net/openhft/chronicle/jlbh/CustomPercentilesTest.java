@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.NanoSampler;
+import net.openhft.chronicle.jlbh.util.CsvJLBHReporter;
+import net.openhft.chronicle.jlbh.util.JLBHResultSerializer;
+import net.openhft.chronicle.jlbh.util.JsonJLBHReporter;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.*;
+
+public class CustomPercentilesTest {
+
+    private static final int ITERATIONS = 10_000;
+
+    @Test
+    public void shouldReportTheConfiguredPercentilesAndStatistics() throws IOException {
+        final JLBHResultConsumer resultConsumer = JLBHResultConsumer.newThreadSafeInstance();
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new JLBH(options(), new PrintStream(baos), resultConsumer).start();
+
+        final String text = baos.toString();
+        assertThat(text, containsString("50/95/99.5 - worst was "));
+        assertThat(text, containsString("End to End statistics"));
+        assertThat(text, containsString("inner statistics"));
+        assertThat(text, containsString("count 10,000 mean 1.50 / stddev 0.29 / min 1.00"));
+        assertThat(text, containsString("mean:    "));
+        assertThat(text, containsString("count:   "));
+
+        final JLBHResult result = resultConsumer.get();
+        for (JLBHResult.ProbeResult probeResult : new JLBHResult.ProbeResult[]{
+                result.endToEnd(), result.probe("inner").orElseThrow(AssertionError::new)}) {
+            final List<JLBHResult.RunResult> runs = probeResult.eachRunSummary();
+            assertEquals(2, runs.size());
+            for (JLBHResult.RunResult run : runs) {
+                assertArrayEquals(new Double[]{0.5, 0.95, 0.995, 1.0}, run.percentileValues().keySet().toArray());
+                final RunStatistics statistics = run.statistics().orElseThrow(AssertionError::new);
+                assertEquals(ITERATIONS, statistics.count());
+                assertEquals(1_499.5, statistics.meanNs(), 1e-6);
+                assertEquals(288.69, statistics.stddevNs(), 0.01);
+                assertEquals(1_000, statistics.minNs(), 0);
+                assertEquals(run.getWorst(), run.percentileValues().get(1.0));
+            }
+        }
+
+        final List<String> lines = csvLines(result);
+        assertEquals(",50th p-le,95th p-le,99.5th p-le,Worst,count,mean,stddev,min,", lines.get(0));
+        assertTrue(lines.get(1), lines.get(1).startsWith("endToEnd,"));
+        assertTrue(lines.get(1), lines.get(1).endsWith(",10000,1500,289,1000,"));
+    }
+
+    @Test
+    public void shouldKeepTheLegacyColumnsByDefault() throws IOException {
+        final JLBHResultConsumer resultConsumer = JLBHResultConsumer.newThreadSafeInstance();
+        // too few iterations for the 99.9th or 99.99th percentile
+        new JLBH(defaultPercentileOptions().iterations(9_000), new PrintStream(new ByteArrayOutputStream()), resultConsumer).start();
+
+        final List<String> lines = csvLines(resultConsumer.get());
+        assertEquals(",50th p-le,90th p-le,99th p-le,999th p-le,9999th p-le,Worst,", lines.get(0));
+        assertTrue(lines.get(1), lines.get(1).matches("endToEnd,\\d+,\\d+,\\d+,,,\\d+,"));
+    }
+
+    @Test
+    public void shouldWriteConfiguredPercentilesAsColumns() throws IOException {
+        final JLBHResultConsumer resultConsumer = JLBHResultConsumer.newThreadSafeInstance();
+        new JLBH(options().percentiles(0.5, 0.997).statistics(false), new PrintStream(new ByteArrayOutputStream()), resultConsumer).start();
+
+        assertEquals(",50th p-le,99.7th p-le,Worst,", csvLines(resultConsumer.get()).get(0));
+    }
+
+    @Test
+    public void shouldStreamTheConfiguredPercentilesAndStatistics() {
+        final StringBuilder json = new StringBuilder();
+        final StringBuilder csv = new StringBuilder();
+        new JLBH(options().addReporter(new JsonJLBHReporter(json)).addReporter(new CsvJLBHReporter(csv)),
+                new PrintStream(new ByteArrayOutputStream()), null).start();
+
+        final List<String> jsonLines = Arrays.asList(json.toString().split("\n"));
+        assertEquals(2, jsonLines.stream()
+                .filter(l -> l.matches("\\{\"event\":\"endToEnd\",.*\"percentilesNS\":\\{\"0\\.5\":[\\d.]+,\"0\\.95\":[\\d.]+,\"0\\.995\":[\\d.]+,\"1\\.0\":[\\d.]+}}"))
+                .count());
+        assertTrue(jsonLines.stream().anyMatch(l -> l.startsWith("{\"event\":\"summary\",\"label\":\"end to end\",")
+                && l.contains("],\"statistics\":[{\"statistic\":\"mean\",\"values\":[1.4995")
+                && l.endsWith("{\"statistic\":\"count\",\"values\":[10000.0,10000.0],\"variation\":0.0}]}")));
+
+        final List<String> probeRows = Arrays.stream(csv.toString().split("\n"))
+                .filter(l -> l.startsWith("probe,1,inner,10000,"))
+                .collect(Collectors.toList());
+        assertEquals(4, probeRows.size());
+        assertTrue(probeRows.get(1), probeRows.get(1).startsWith("probe,1,inner,10000,0.95,"));
+    }
+
+    private static List<String> csvLines(JLBHResult result) throws IOException {
+        final Path csv = Files.createTempFile("jlbh", ".csv");
+        try {
+            JLBHResultSerializer.runResultToCSV(result, csv.toString());
+            return Files.readAllLines(csv);
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+    }
+
+    @Test
+    public void shouldAlwaysReportTheWorstWithoutStatistics() {
+        final JLBHResultConsumer resultConsumer = JLBHResultConsumer.newThreadSafeInstance();
+        new JLBH(options().percentiles(0.5).statistics(false), new PrintStream(new ByteArrayOutputStream()), resultConsumer).start();
+
+        final JLBHResult.RunResult run = resultConsumer.get().endToEnd().summaryOfLastRun();
+        assertArrayEquals(new Double[]{0.5, 1.0}, run.percentileValues().keySet().toArray());
+        assertFalse(run.statistics().isPresent());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectPercentilesOutOfOrder() {
+        new JLBHOptions().percentiles(0.99, 0.9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTheWorstPercentile() {
+        new JLBHOptions().percentiles(0.5, 1.0);
+    }
+
+    @NotNull
+    private static JLBHOptions options() {
+        return defaultPercentileOptions()
+                .percentiles(0.5, 0.95, 0.995)
+                .statistics(true);
+    }
+
+    @NotNull
+    private static JLBHOptions defaultPercentileOptions() {
+        return new JLBHOptions()
+                .warmUpIterations(500)
+                .iterations(ITERATIONS)
+                .runs(2)
+                .throughput(1_000_000)
+                .accountForCoordinatedOmission(false)
+                .recordOSJitter(false)
+                .jlbhTask(new CyclingLatencyTask());
+    }
+
+    // samples 1,000 to 1,999 ns in turn, so every run has the same statistics
+    private static final class CyclingLatencyTask implements JLBHTask {
+        private JLBH jlbh;
+        private NanoSampler inner;
+        private long count;
+
+        @Override
+        public void init(JLBH jlbh) {
+            this.jlbh = jlbh;
+            inner = jlbh.addProbe("inner");
+        }
+
+        @Override
+        public void run(long startTimeNS) {
+            final long latencyNs = 1_000 + count++ % 1_000;
+            inner.sampleNanos(latencyNs);
+            jlbh.sample(latencyNs);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.*;
+import static org.junit.Assert.*;
+
+public class DeferredReportingTest {
+
+    @Test
+    public void shouldReportTheSameAsTheBenchmarkThread() {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        final JLBHResultConsumer expectedResult = JLBHResultConsumer.newThreadSafeInstance();
+        new JLBH(options(), new PrintStream(expected), expectedResult).start();
+
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        final JLBHResultConsumer actualResult = JLBHResultConsumer.newThreadSafeInstance();
+        new JLBH(options().deferredReporting(true), new PrintStream(actual), actualResult).start();
+
+        assertEquals(withoutNonDeterministicFields(expected.toString()), withoutNonDeterministicFields(actual.toString()));
+        assertRunsEqual(expectedResult.get().endToEnd().eachRunSummary(), actualResult.get().endToEnd().eachRunSummary());
+        assertRunsEqual(expectedResult.get().probe("A").orElseThrow(AssertionError::new).eachRunSummary(),
+                actualResult.get().probe("A").orElseThrow(AssertionError::new).eachRunSummary());
+    }
+
+    @Test
+    public void shouldReportOnAnotherThread() {
+        final Set<String> reportingThreads = new ConcurrentSkipListSet<>();
+        final Set<String> runCompleteThreads = new ConcurrentSkipListSet<>();
+        final JLBHOptions options = options()
+                .deferredReporting(true)
+                .addReporter(new JLBHReporter() {
+                    @Override
+                    public void endToEnd(int run, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+                        assertEquals(ITERATIONS, histogram.totalCount());
+                        reportingThreads.add(Thread.currentThread().getName());
+                    }
+                })
+                .jlbhTask(new PredictableJLBHTask() {
+                    @Override
+                    public void runComplete() {
+                        runCompleteThreads.add(Thread.currentThread().getName());
+                    }
+                });
+        new JLBH(options, new PrintStream(new ByteArrayOutputStream()), null).start();
+
+        assertEquals(1, reportingThreads.size());
+        assertEquals(Thread.currentThread().getName(), runCompleteThreads.iterator().next());
+        assertNotEquals(Thread.currentThread().getName(), reportingThreads.iterator().next());
+    }
+
+    @Test
+    public void shouldNotSampleTheHistogramSwappedOut() throws InterruptedException {
+        final DoubleBufferedHistogram buffer = new DoubleBufferedHistogram(new Histogram(35, 8, 100), new Histogram(35, 8, 100));
+        final AtomicBoolean running = new AtomicBoolean(true);
+        // a task thread sampling, as in continuous mode
+        final Thread sampler = new Thread(() -> {
+            while (running.get())
+                buffer.sampleNanos(1_000);
+        });
+        sampler.start();
+        try {
+            long total = 0;
+            for (int i = 0; i < 1_000; i++) {
+                final Histogram sampled = buffer.swap();
+                final long count = sampled.totalCount();
+                final long end = System.nanoTime() + 20_000;
+                while (System.nanoTime() < end)
+                    Thread.yield();
+                assertEquals(count, sampled.totalCount());
+                total += count;
+                sampled.reset();
+            }
+            assertTrue(total > 0);
+        } finally {
+            running.set(false);
+            sampler.join();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotSupportPipelines() {
+        new JLBH(options().deferredReporting(true).addPipeline("other", 1_000, new PredictableJLBHTask()));
+    }
+
+    private static void assertRunsEqual(List<JLBHResult.RunResult> expected, List<JLBHResult.RunResult> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+    }
+}
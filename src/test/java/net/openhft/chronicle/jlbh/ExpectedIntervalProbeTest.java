@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import net.openhft.chronicle.core.util.NanoSampler;
+import org.junit.Test;
+
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.options;
+import static org.junit.Assert.assertEquals;
+
+public class ExpectedIntervalProbeTest {
+
+    @Test
+    public void shouldBackFillStalls() {
+        final JLBH jlbh = new JLBH(options());
+        final NanoSampler probe = jlbh.addProbe("stage", 1_000);
+        final Histogram histogram = jlbh.probeHistograms().get("stage");
+
+        probe.sampleNanos(800);
+        assertEquals(1, histogram.totalCount());
+
+        // stalled for 5 intervals, so the next 4 samples would have been delayed by 4, 3, 2 and 1 intervals
+        probe.sampleNanos(5_000);
+        assertEquals(6, histogram.totalCount());
+        assertEquals(1_000, histogram.percentile(0.3), 0);
+        assertEquals(5_000, histogram.percentile(1.0), 0);
+
+        probe.sampleNanos(1_999);
+        assertEquals(7, histogram.totalCount());
+    }
+
+    @Test
+    public void shouldShareTheHistogramWithThePlainProbe() {
+        final JLBH jlbh = new JLBH(options());
+        final NanoSampler plain = jlbh.addProbe("stage");
+        final NanoSampler corrected = jlbh.addProbe("stage", 1_000);
+        plain.sampleNanos(3_000);
+        corrected.sampleNanos(3_000);
+        assertEquals(1 + 3, jlbh.probeHistograms().get("stage").totalCount());
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.*;
+import static org.junit.Assert.*;
+
+public class JLBHBatchTest {
+
+    @Test
+    public void shouldRunBatchesWithTheirOwnStartTimes() {
+        final List<Integer> counts = new ArrayList<>();
+        final List<long[]> batches = new ArrayList<>();
+        final List<Long> earlyBatches = new ArrayList<>();
+        final JLBHTask task = new JLBHTask() {
+            private JLBH jlbh;
+
+            @Override
+            public void init(JLBH jlbh) {
+                this.jlbh = jlbh;
+            }
+
+            @Override
+            public void run(long startTimeNS) {
+                fail("Should be run in batches");
+            }
+
+            @Override
+            public void runBatch(long[] startTimesNS, int count) {
+                final long now = System.nanoTime();
+                if (now < startTimesNS[count - 1])
+                    earlyBatches.add(startTimesNS[count - 1] - now);
+                counts.add(count);
+                final long[] copy = new long[count];
+                System.arraycopy(startTimesNS, 0, copy, 0, count);
+                batches.add(copy);
+                for (int i = 0; i < count; i++)
+                    jlbh.sample(System.nanoTime() - startTimesNS[i]);
+            }
+
+            @Override
+            public void warmedUp() {
+                counts.clear();
+                batches.clear();
+            }
+        };
+        new JLBH(options().jlbhTask(task).batchSize(7).recordOSJitter(false), new PrintStream(new ByteArrayOutputStream()), null).start();
+
+        // 9,000 = 7 x 1,285 + 5
+        assertEquals(RUNS * 1286, counts.size());
+        for (int run = 0; run < RUNS; run++) {
+            assertEquals(7, (int) counts.get(run * 1286));
+            assertEquals(5, (int) counts.get(run * 1286 + 1285));
+        }
+        assertEquals(RUNS * ITERATIONS, counts.stream().mapToInt(Integer::intValue).sum());
+        // each has its own start time at the target throughput
+        for (long[] batch : batches)
+            for (int i = 1; i < batch.length; i++)
+                assertEquals(1_000, batch[i] - batch[i - 1]);
+        assertEquals(earlyBatches.toString(), 0, earlyBatches.size());
+    }
+
+    @Test
+    public void shouldShareTheStartTimeWithoutCoordinatedOmission() {
+        final List<long[]> batches = new ArrayList<>();
+        final List<Long> runTimes = new ArrayList<>();
+        final JLBHTask task = new JLBHTask() {
+            private JLBH jlbh;
+            private boolean warmedUp;
+            private long firstBatchNs;
+
+            @Override
+            public void init(JLBH jlbh) {
+                this.jlbh = jlbh;
+            }
+
+            @Override
+            public void run(long startTimeNS) {
+                jlbh.sample(System.nanoTime() - startTimeNS);
+            }
+
+            @Override
+            public void runBatch(long[] startTimesNS, int count) {
+                final long[] copy = new long[count];
+                System.arraycopy(startTimesNS, 0, copy, 0, count);
+                batches.add(copy);
+                if (warmedUp && firstBatchNs == 0)
+                    firstBatchNs = System.nanoTime();
+                JLBHTask.super.runBatch(startTimesNS, count);
+            }
+
+            @Override
+            public void warmedUp() {
+                warmedUp = true;
+            }
+
+            @Override
+            public void runComplete() {
+                runTimes.add(System.nanoTime() - firstBatchNs);
+                firstBatchNs = 0;
+            }
+        };
+        new JLBH(options().jlbhTask(task).batchSize(4).throughput(100_000).accountForCoordinatedOmission(false)
+                .recordOSJitter(false),
+                new PrintStream(new ByteArrayOutputStream()), null).start();
+
+        assertFalse(batches.isEmpty());
+        for (long[] batch : batches)
+            for (long startTime : batch)
+                assertEquals(batch[0], startTime);
+        // each batch waits for the 10 us interval of every iteration in it, so a run keeps the target throughput
+        assertEquals(RUNS, runTimes.size());
+        for (long runTime : runTimes)
+            assertTrue(String.valueOf(runTime), runTime >= (ITERATIONS - 4) * 10_000L * 9 / 10);
+    }
+}
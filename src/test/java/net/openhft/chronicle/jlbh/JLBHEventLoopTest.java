@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.core.threads.EventLoop;
+import net.openhft.chronicle.threads.MediumEventLoop;
+import net.openhft.chronicle.threads.Pauser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class JLBHEventLoopTest {
+    private EventLoop eventLoop;
+
+    @Before
+    public void before() {
+        eventLoop = new MediumEventLoop(null, "el", Pauser.busy(), true, null);
+        eventLoop.start();
+    }
+
+    @After
+    public void after() {
+        Closeable.closeQuietly(eventLoop);
+    }
+
+    private static JLBHResult awaitResult(JLBHResultConsumer resultConsumer) {
+        final long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (resultConsumer.get() == null && System.currentTimeMillis() < end)
+            Jvm.pause(10);
+        assertNotNull(resultConsumer.get());
+        return resultConsumer.get();
+    }
+
+    @Test
+    public void shouldShareTheScheduleBetweenHandlersAndCatchUp() {
+        final List<Long> startTimes = new ArrayList<>();
+        final PredictableJLBHTask task = new PredictableJLBHTask() {
+            @Override
+            public void run(long startTimeNS) {
+                if (startTimes.size() == 100)
+                    // forces the handlers to catch up
+                    Jvm.pause(5);
+                startTimes.add(startTimeNS);
+                super.run(startTimeNS);
+            }
+
+            @Override
+            public void warmedUp() {
+                startTimes.clear();
+            }
+        };
+        final JLBHResultConsumer resultConsumer = JLBHResultConsumer.newThreadSafeInstance();
+        final JLBH jlbh = new JLBH(options().jlbhTask(task).runs(1), new PrintStream(new ByteArrayOutputStream()), resultConsumer);
+        jlbh.eventLoopHandler(eventLoop, 4);
+
+        final JLBHResult result = awaitResult(resultConsumer);
+        assertEquals(1, result.endToEnd().eachRunSummary().size());
+        assertEquals(ITERATIONS, startTimes.size());
+        // handlers may run out of order when catching up, but together follow one schedule
+        Collections.sort(startTimes);
+        for (int i = 1; i < startTimes.size(); i++)
+            assertEquals(1_000, startTimes.get(i) - startTimes.get(i - 1));
+    }
+
+    @Test
+    public void shouldRunWithoutCorrectingForCoordinatedOmission() {
+        final JLBHResultConsumer resultConsumer = JLBHResultConsumer.newThreadSafeInstance();
+        final JLBH jlbh = new JLBH(options().accountForCoordinatedOmission(false), new PrintStream(new ByteArrayOutputStream()), resultConsumer);
+        jlbh.eventLoopHandler(eventLoop);
+
+        assertEquals(RUNS, awaitResult(resultConsumer).endToEnd().eachRunSummary().size());
+    }
+
+    @Test
+    public void shouldPaceWarmUpWithTheLatencyDistributor() {
+        final List<Long> intervals = pacedWarmUpIntervals(true);
+        for (long interval : intervals)
+            assertEquals(2_000, interval);
+    }
+
+    @Test
+    public void shouldPaceWarmUpFromTheActualStartWithoutCorrectingForCoordinatedOmission() {
+        final List<Long> intervals = pacedWarmUpIntervals(false);
+        for (long interval : intervals)
+            assertTrue("interval " + interval, interval >= 2_000);
+    }
+
+    private List<Long> pacedWarmUpIntervals(boolean accountForCoordinatedOmission) {
+        final List<Long> startTimes = new ArrayList<>();
+        final PredictableJLBHTask task = new PredictableJLBHTask() {
+            private boolean warmedUp;
+
+            @Override
+            public void run(long startTimeNS) {
+                if (!warmedUp)
+                    startTimes.add(startTimeNS);
+                super.run(startTimeNS);
+            }
+
+            @Override
+            public void warmedUp() {
+                warmedUp = true;
+            }
+        };
+        final JLBHResultConsumer resultConsumer = JLBHResultConsumer.newThreadSafeInstance();
+        // twice the 1 us between iterations at the target throughput
+        final JLBH jlbh = new JLBH(options().jlbhTask(task).runs(1).pacedWarmUp()
+                .latencyDistributor(averageLatencyNS -> 2 * averageLatencyNS)
+                .accountForCoordinatedOmission(accountForCoordinatedOmission),
+                new PrintStream(new ByteArrayOutputStream()), resultConsumer);
+        jlbh.eventLoopHandler(eventLoop);
+        awaitResult(resultConsumer);
+
+        assertEquals(WARM_UP_ITERATIONS, startTimes.size());
+        final List<Long> intervals = new ArrayList<>();
+        for (int i = 1; i < startTimes.size(); i++)
+            intervals.add(startTimes.get(i) - startTimes.get(i - 1));
+        return intervals;
+    }
+}
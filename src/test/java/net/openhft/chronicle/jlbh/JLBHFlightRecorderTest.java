@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.RUNS;
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.options;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JLBHFlightRecorderTest {
+
+    private static final long THRESHOLD_NS = 10_000;
+
+    @Test
+    public void shouldRecordOutliersAndRuns() throws Exception {
+        final Path file = Files.createTempFile("jlbh", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable("net.openhft.chronicle.jlbh.OutlierSample");
+                recording.enable("net.openhft.chronicle.jlbh.Run");
+                recording.start();
+                new JLBH(options().jfrOutlierThresholdNs(THRESHOLD_NS), new PrintStream(new ByteArrayOutputStream()), null).start();
+                recording.stop();
+                recording.dump(file);
+            }
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+            final List<RecordedEvent> runs = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("net.openhft.chronicle.jlbh.Run"))
+                    .collect(Collectors.toList());
+            assertEquals(RUNS, runs.size());
+            for (RecordedEvent run : runs)
+                assertEquals(JLBHDeterministicFixtures.ITERATIONS, run.getLong("iterations"));
+
+            final List<RecordedEvent> outliers = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("net.openhft.chronicle.jlbh.OutlierSample"))
+                    .collect(Collectors.toList());
+            assertTrue(outliers.stream().anyMatch(e -> "end to end".equals(e.getString("probe"))));
+            assertTrue(outliers.stream().anyMatch(e -> "A".equals(e.getString("probe"))));
+            // B is always 100 ns
+            assertTrue(outliers.stream().noneMatch(e -> "B".equals(e.getString("probe"))));
+            for (RecordedEvent outlier : outliers) {
+                assertTrue(outlier.getDuration("latency").toNanos() > THRESHOLD_NS);
+                assertTrue(outlier.getLong("intendedStartNanoTime") != 0);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
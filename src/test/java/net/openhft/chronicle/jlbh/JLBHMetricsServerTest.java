@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.options;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JLBHMetricsServerTest {
+
+    static String scrape(InetSocketAddress address) {
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) new URL("http://" + address.getHostString() + ":" + address.getPort() + "/metrics").openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertEquals(JLBHMetricsServer.CONTENT_TYPE, connection.getContentType());
+            try (InputStream in = connection.getInputStream()) {
+                final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[4096];
+                for (int len; (len = in.read(buffer)) > 0; )
+                    baos.write(buffer, 0, len);
+                return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    public void shouldServeHistogramsOfTheCurrentRun() {
+        final List<String> scrapes = new ArrayList<>();
+        final JLBHDeterministicFixtures.PredictableJLBHTask task = new JLBHDeterministicFixtures.PredictableJLBHTask() {
+            private JLBH jlbh;
+
+            @Override
+            public void init(JLBH lth) {
+                super.init(lth);
+                this.jlbh = lth;
+            }
+
+            @Override
+            public void runComplete() {
+                // called before the histograms are reset
+                scrapes.add(scrape(jlbh.metricsAddress()));
+            }
+        };
+        final JLBH jlbh = new JLBH(options().jlbhTask(task).metricsPort(0), new PrintStream(new ByteArrayOutputStream()), null);
+        jlbh.start();
+
+        assertEquals(JLBHDeterministicFixtures.RUNS, scrapes.size());
+        final String last = scrapes.get(scrapes.size() - 1);
+        assertThat(last, containsString("# TYPE jlbh_run gauge\n"));
+        assertThat(last, containsString("\njlbh_run 3\n"));
+        assertThat(last, containsString("# TYPE jlbh_end_to_end_latency_seconds summary\n# UNIT jlbh_end_to_end_latency_seconds seconds\n"));
+        assertThat(last, containsString("jlbh_end_to_end_latency_seconds{quantile=\"0.5\"} 6."));
+        assertThat(last, containsString("jlbh_end_to_end_latency_seconds_count 9000\n"));
+        assertThat(last, containsString("jlbh_probe_latency_seconds{probe=\"B\",quantile=\"1.0\"} 1."));
+        assertThat(last, containsString("jlbh_probe_latency_seconds_count{probe=\"A\"} 9000\n"));
+        assertThat(last, containsString("# TYPE jlbh_os_jitter_seconds summary\n"));
+        assertThat(last, containsString("\n# EOF\n"));
+
+        // stopped once the benchmark is complete
+        assertNull(jlbh.metricsAddress());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.*;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class JLBHPipelineTest {
+
+    @Test
+    public void shouldMeasurePipelinesInTheSameWindow() {
+        final List<Long> mainStartTimes = new ArrayList<>();
+        final List<Long> cancelStartTimes = new ArrayList<>();
+        final PredictableJLBHTask main = new PredictableJLBHTask() {
+            @Override
+            public void run(long startTimeNS) {
+                mainStartTimes.add(startTimeNS);
+                super.run(startTimeNS);
+            }
+
+            @Override
+            public void warmedUp() {
+                mainStartTimes.clear();
+            }
+        };
+        final FixedLatencyJLBHTask cancel = new FixedLatencyJLBHTask(100) {
+            @Override
+            public void run(long startTimeNS) {
+                cancelStartTimes.add(startTimeNS);
+                super.run(startTimeNS);
+            }
+
+            @Override
+            public void warmedUp() {
+                cancelStartTimes.clear();
+            }
+        };
+        final JLBHResultConsumer resultConsumer = JLBHResultConsumer.newThreadSafeInstance();
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        // a quarter of the main throughput
+        new JLBH(options().jlbhTask(main).addPipeline("cancel", THROUGHPUT / 4, cancel), new PrintStream(baos), resultConsumer).start();
+
+        assertEquals(RUNS * ITERATIONS, mainStartTimes.size());
+        assertEquals(RUNS * ITERATIONS / 4, cancelStartTimes.size());
+        // the last run is measured over the same window
+        final long mainFirst = mainStartTimes.get(2 * ITERATIONS);
+        final long cancelFirst = cancelStartTimes.get(2 * ITERATIONS / 4);
+        assertEquals(mainFirst, cancelFirst);
+        assertEquals(4_000, cancelStartTimes.get(2 * ITERATIONS / 4 + 1) - cancelFirst);
+        final long mainLast = Collections.max(mainStartTimes);
+        final long cancelLast = Collections.max(cancelStartTimes);
+        assertEquals(mainLast, cancelLast, 4_000);
+
+        final String text = baos.toString();
+        assertThat(text, containsString("cancel (2,250) "));
+        assertThat(text, containsString("cancel: A (2,250) "));
+        assertThat(text, containsString("-- SUMMARY (cancel) us --"));
+        assertThat(text, containsString("-- SUMMARY (cancel: B) us --"));
+
+        final JLBHResult result = resultConsumer.get();
+        assertEquals(Collections.singleton("cancel"), result.pipelineNames());
+        assertFalse(result.probe("cancel").isPresent());
+        final JLBHResult cancelResult = result.pipeline("cancel").orElseThrow(AssertionError::new);
+        assertEquals(RUNS, cancelResult.endToEnd().eachRunSummary().size());
+        assertEquals(Duration.ofNanos(100), cancelResult.endToEnd().summaryOfLastRun().getWorst());
+        assertEquals(Duration.ofNanos(100), cancelResult.probe("A").orElseThrow(AssertionError::new).summaryOfLastRun().get50thPercentile());
+        assertEquals(RUNS, result.endToEnd().eachRunSummary().size());
+    }
+}
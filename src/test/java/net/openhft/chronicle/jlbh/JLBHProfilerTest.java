@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.RUNS;
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.options;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JLBHProfilerTest {
+
+    @Test
+    public void shouldProfileOnlyTheMeasuredRuns() {
+        final List<String> events = new ArrayList<>();
+        final JLBHDeterministicFixtures.PredictableJLBHTask task = new JLBHDeterministicFixtures.PredictableJLBHTask() {
+            @Override
+            public void warmedUp() {
+                events.add("warmedUp");
+            }
+
+            @Override
+            public void runComplete() {
+                events.add("runComplete");
+            }
+        };
+        final JLBHProfiler profiler = new JLBHProfiler() {
+            @Override
+            public void start(int run) {
+                events.add("start " + run);
+            }
+
+            @Nullable
+            @Override
+            public Path stop(int run) {
+                events.add("stop " + run);
+                return null;
+            }
+        };
+        new JLBH(options().jlbhTask(task).profiler(profiler), new PrintStream(new ByteArrayOutputStream()), null).start();
+
+        final List<String> expected = new ArrayList<>();
+        expected.add("warmedUp");
+        for (int run = 1; run <= RUNS; run++) {
+            expected.add("start " + run);
+            expected.add("stop " + run);
+            expected.add("runComplete");
+        }
+        assertEquals(expected, events);
+    }
+
+    @Test
+    public void shouldWriteAFlightRecordingForEachRun() throws IOException {
+        final Path directory = Files.createTempDirectory("jlbh-profiles");
+        try {
+            final JLBHResultConsumer resultConsumer = JLBHResultConsumer.newThreadSafeInstance();
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            new JLBH(options().profileRuns(directory), new PrintStream(baos), resultConsumer).start();
+
+            final List<Path> profiles = resultConsumer.get().profiles();
+            assertEquals(RUNS, profiles.size());
+            for (int run = 1; run <= RUNS; run++) {
+                final Path profile = profiles.get(run - 1);
+                assertEquals(directory.resolve("jlbh-run" + run + ".jfr"), profile);
+                assertTrue(Files.size(profile) > 0);
+                assertThat(baos.toString(), containsString("Profile: " + profile));
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.jlbh.util.CsvJLBHReporter;
+import net.openhft.chronicle.jlbh.util.JsonJLBHReporter;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JLBHReporterTest {
+
+    private static long count(List<String> lines, String prefix) {
+        return lines.stream().filter(l -> l.startsWith(prefix)).count();
+    }
+
+    @Test
+    public void shouldStreamJsonEvents() {
+        final StringBuilder json = new StringBuilder();
+        final JLBHOptions jlbhOptions = options().addReporter(new JsonJLBHReporter(json));
+        new JLBH(jlbhOptions, new PrintStream(new ByteArrayOutputStream()), null).start();
+
+        final List<String> lines = Arrays.asList(json.toString().split("\n"));
+        assertEquals(1, count(lines, "{\"event\":\"warmedUp\",\"warmUpIterations\":500,"));
+        assertEquals(RUNS, count(lines, "{\"event\":\"runHeader\""));
+        assertEquals(RUNS, count(lines, "{\"event\":\"endToEnd\""));
+        assertEquals(2 * RUNS, count(lines, "{\"event\":\"probe\""));
+        assertEquals(RUNS, count(lines, "{\"event\":\"osJitter\""));
+        assertEquals(RUNS, count(lines, "{\"event\":\"runComplete\""));
+        assertEquals(3, count(lines, "{\"event\":\"summary\""));
+        assertEquals("{\"event\":\"complete\"}", lines.get(lines.size() - 1));
+
+        assertTrue(lines.contains("{\"event\":\"runComplete\",\"run\":3}"));
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith(
+                "{\"event\":\"runHeader\",\"run\":1,\"runTimeMS\":")
+                && l.endsWith(",\"distribution\":\"NORMAL\",\"accountForCoordinatedOmission\":true,\"throughput\":1000000,\"throughputTimeUnit\":\"SECONDS\",\"latencyBetweenTasksNS\":1000}")));
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith(
+                "{\"event\":\"probe\",\"run\":2,\"name\":\"A\",\"count\":9000,\"percentilesNS\":{\"0.5\":")));
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith(
+                "{\"event\":\"summary\",\"label\":\"B\",\"runs\":3,\"rows\":[{\"percentile\":0.5,\"valuesUS\":[0.1")));
+    }
+
+    @Test
+    public void shouldStreamCsvRows() {
+        final StringBuilder csv = new StringBuilder();
+        final JLBHOptions jlbhOptions = options().addReporter(new CsvJLBHReporter(csv));
+        new JLBH(jlbhOptions, new PrintStream(new ByteArrayOutputStream()), null).start();
+
+        final List<String> lines = Arrays.asList(csv.toString().split("\n"));
+        assertEquals(CsvJLBHReporter.HEADER, lines.get(0));
+        assertTrue(lines.get(1).startsWith("warmUp,,,500,,"));
+        assertEquals(RUNS, count(lines, "runTime,"));
+        // 9,000 samples gives 50/90/99/worst
+        assertEquals(4 * RUNS, count(lines, "endToEnd,"));
+        final List<String> probeB = lines.stream()
+                .filter(l -> l.startsWith("probe,1,B,9001,"))
+                .collect(Collectors.toList());
+        assertEquals(4, probeB.size());
+        assertTrue(probeB.get(0).startsWith("probe,1,B,9001,0.5,100"));
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith("summary,3,B,,1.0,0.1")));
+        assertTrue(lines.contains("variation,,B,,0.5,0.0"));
+    }
+
+    @Test
+    public void textReporterShouldMatchTheOriginalOutput() {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new JLBH(options(), new PrintStream(baos), null).start();
+
+        final String actual = withoutNonDeterministicFields(baos.toString());
+        assertTrue(actual.startsWith("Warm up complete ...\n" +
+                "-------------------------------- BENCHMARK RESULTS (RUN 1) us --------------------------------------\n" +
+                "Run time: ...s, distribution: NORMAL\n" +
+                "Correcting for co-ordinated:true\n" +
+                "Target throughput:1000000/s = 1 message every 1us\n" +
+                "End to End: (9,000)                             50/90 99/99.9 99.99 - worst was "));
+        assertTrue(actual.endsWith("----------------------------------------------------------------------------------------------------\n" +
+                "-------------------------------- SUMMARY (B) us ----------------------------------------------------\n" +
+                "Percentile   run1         run2         run3      % Variation\n" +
+                "50.0:            0.10         0.10         0.10         0.00\n" +
+                "90.0:            0.10         0.10         0.10         0.00\n" +
+                "99.0:            0.10         0.10         0.10         0.00\n" +
+                "worst:           0.10         0.10         0.10         0.00\n" +
+                "----------------------------------------------------------------------------------------------------\n"));
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntToLongFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks JLBH measures known latencies accurately. Each task busy waits for a delay chosen by the iteration, and
+ * the percentiles reported are compared with those of the same delays replayed through the schedule JLBH paces,
+ * with and without correcting for coordinated omission. This is the acceptance test for changes to pacing or
+ * recording.
+ * <p>
+ * The delays replayed are those the task actually took, as the machine can pause the task for longer than the delay
+ * injected. Pauses outside the task can't be replayed, and with coordinated omission correction they delay the
+ * iterations behind them too. So the worst, and with correction the percentiles over the 90th, are only checked to
+ * be at least those replayed, unless the injected latency dominates.
+ */
+@RunWith(Parameterized.class)
+public class JLBHValidationTest {
+
+    private static final int ITERATIONS = 10_000;
+    private static final long INTERVAL_NS = 100_000;
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    // allows for the busy wait overshooting, the time to record a sample and the resolution of the histogram
+    private static final double RELATIVE_TOLERANCE = 0.1;
+    private static final long ABSOLUTE_TOLERANCE_NS = 25_000;
+    // the machine's own jitter can dominate the percentiles over the 90th below this
+    private static final long JITTER_NS = 1_000_000;
+
+    private final String distribution;
+    private final IntToLongFunction delays;
+    private final boolean accountForCoordinatedOmission;
+
+    public JLBHValidationTest(String distribution, IntToLongFunction delays, boolean accountForCoordinatedOmission) {
+        this.distribution = distribution;
+        this.delays = delays;
+        this.accountForCoordinatedOmission = accountForCoordinatedOmission;
+    }
+
+    @Parameterized.Parameters(name = "{0} coordinated omission {2}")
+    public static Collection<Object[]> data() {
+        // none of the percentiles are on the boundary between two delays, where a one sample error changes the value
+        final IntToLongFunction constant = i -> 20_000;
+        // one in eight is slow
+        final IntToLongFunction bimodal = i -> i % 8 == 7 ? 80_000 : 10_000;
+        // 12 stalls per run
+        final IntToLongFunction periodicStalls = i -> i % 800 == 799 ? 3_000_000 : 10_000;
+        final IntToLongFunction giantPause = i -> i == ITERATIONS / 2 ? 30_000_000 : 10_000;
+        final List<Object[]> data = new ArrayList<>();
+        for (boolean co : new boolean[]{false, true}) {
+            data.add(new Object[]{"constant", constant, co});
+            data.add(new Object[]{"bimodal", bimodal, co});
+            data.add(new Object[]{"periodic stalls", periodicStalls, co});
+            data.add(new Object[]{"giant pause", giantPause, co});
+        }
+        return data;
+    }
+
+    @Test
+    public void shouldReportTheInjectedLatencies() {
+        final JLBHResultConsumer resultConsumer = JLBHResultConsumer.newThreadSafeInstance();
+        final DelayTask task = new DelayTask(delays);
+        final JLBHOptions options = new JLBHOptions()
+                .warmUpIterations(2_000)
+                .iterations(ITERATIONS)
+                .runs(2)
+                .throughput((int) (1_000_000_000 / INTERVAL_NS))
+                .accountForCoordinatedOmission(accountForCoordinatedOmission)
+                .recordOSJitter(false)
+                .percentiles(PERCENTILES)
+                .jlbhTask(task);
+        new JLBH(options, new PrintStream(new ByteArrayOutputStream()), resultConsumer).start();
+
+        final Map<Double, Duration> reported = resultConsumer.get().endToEnd().summaryOfLastRun().percentileValues();
+        final long[] latencies = expectedLatencies(i -> task.taken[i], accountForCoordinatedOmission);
+        Arrays.sort(latencies);
+        assertEquals(PERCENTILES.length + 1, reported.size());
+        reported.forEach((percentile, duration) -> {
+            final long expected = latencies[(int) Math.ceil(percentile * latencies.length) - 1];
+            final long actual = duration.toNanos();
+            final String message = distribution + " " + percentile + " expected " + expected + " ns but was " + actual;
+            // the busy wait can only be late, so allow for the histogram's resolution below
+            assertTrue(message, actual >= expected * 0.99);
+            final boolean jitterCanDominate = percentile == 1.0 || (accountForCoordinatedOmission && percentile > 0.9);
+            if (!jitterCanDominate || expected >= JITTER_NS)
+                assertTrue(message, actual <= expected * (1 + RELATIVE_TOLERANCE) + ABSOLUTE_TOLERANCE_NS);
+        });
+    }
+
+    /**
+     * Replays the delays through the schedule JLBH paces. When correcting for coordinated omission each iteration is
+     * timed from when it should have started, so after a stall the iterations queued behind it are late as well.
+     * Otherwise the schedule restarts when an iteration is late, so each latency is its delay.
+     */
+    @NotNull
+    static long[] expectedLatencies(@NotNull IntToLongFunction delays, boolean accountForCoordinatedOmission) {
+        final long[] latencies = new long[ITERATIONS];
+        long finished = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            final long delay = delays.applyAsLong(i);
+            if (!accountForCoordinatedOmission) {
+                latencies[i] = delay;
+                continue;
+            }
+            final long intended = i * INTERVAL_NS;
+            finished = Math.max(intended, finished) + delay;
+            latencies[i] = finished - intended;
+        }
+        return latencies;
+    }
+
+    private static final class DelayTask implements JLBHTask {
+        private final IntToLongFunction delays;
+        // the time each iteration of the last run actually took
+        final long[] taken = new long[ITERATIONS];
+        private JLBH jlbh;
+        // the iteration of the run, so every run has the same delays
+        private int iteration;
+
+        DelayTask(IntToLongFunction delays) {
+            this.delays = delays;
+        }
+
+        @Override
+        public void init(JLBH jlbh) {
+            this.jlbh = jlbh;
+        }
+
+        @Override
+        public void warmedUp() {
+            iteration = 0;
+        }
+
+        @Override
+        public void run(long startTimeNS) {
+            final long start = System.nanoTime();
+            final long end = start + delays.applyAsLong(iteration);
+            long now;
+            do {
+                now = System.nanoTime();
+            } while (now < end);
+            // the warm up has more iterations
+            if (iteration < ITERATIONS)
+                taken[iteration] = now - start;
+            iteration++;
+            jlbh.sample(System.nanoTime() - startTimeNS);
+        }
+
+        @Override
+        public void runComplete() {
+            iteration = 0;
+        }
+    }
+}
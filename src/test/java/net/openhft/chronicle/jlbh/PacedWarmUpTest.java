@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.WARM_UP_ITERATIONS;
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.options;
+import static org.junit.Assert.assertEquals;
+
+public class PacedWarmUpTest {
+
+    @Test
+    public void shouldPaceEachStageOfWarmup() {
+        assertPacedStages(1);
+    }
+
+    @Test
+    public void shouldPaceEachStageOfWarmupInBatches() {
+        assertPacedStages(5);
+    }
+
+    private static void assertPacedStages(int batchSize) {
+        final List<Long> warmUpStartTimes = new ArrayList<>();
+        final JLBHDeterministicFixtures.PredictableJLBHTask task = new JLBHDeterministicFixtures.PredictableJLBHTask() {
+            private boolean warmedUp;
+
+            @Override
+            public void run(long startTimeNS) {
+                if (!warmedUp)
+                    warmUpStartTimes.add(startTimeNS);
+                super.run(startTimeNS);
+            }
+
+            @Override
+            public void warmedUp() {
+                warmedUp = true;
+            }
+        };
+        // 1 us between iterations at the target throughput
+        new JLBH(options().jlbhTask(task).pacedWarmUp(0.25, 0.5, 1.0).batchSize(batchSize).runs(1),
+                new PrintStream(new ByteArrayOutputStream()), null).start();
+
+        assertEquals(WARM_UP_ITERATIONS, warmUpStartTimes.size());
+        final int stage = WARM_UP_ITERATIONS / 3;
+        // start times can be late by the time taken to busy wait, or if the thread is descheduled
+        assertEquals(4_000, medianInterval(warmUpStartTimes, 0, stage), 400);
+        assertEquals(2_000, medianInterval(warmUpStartTimes, stage, 2 * stage), 200);
+        assertEquals(1_000, medianInterval(warmUpStartTimes, 2 * stage + 1, WARM_UP_ITERATIONS), 100);
+    }
+
+    private static long medianInterval(List<Long> startTimes, int from, int to) {
+        final long[] intervals = new long[to - 1 - from];
+        for (int i = 0; i < intervals.length; i++)
+            intervals[i] = startTimes.get(from + i + 1) - startTimes.get(from + i);
+        Arrays.sort(intervals);
+        return intervals[intervals.length / 2];
+    }
+}
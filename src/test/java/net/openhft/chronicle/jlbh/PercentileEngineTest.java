@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import net.openhft.chronicle.core.util.NanoSampler;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class PercentileEngineTest {
+
+    private static final int PROBES = 12;
+
+    @Test
+    public void shouldCalculateTheSamePercentilesInParallel() {
+        final Random random = new Random(1);
+        final Histogram[] histograms = new Histogram[50];
+        for (int h = 0; h < histograms.length; h++) {
+            histograms[h] = new Histogram(35, 8, 100);
+            // a different number of samples, so different percentiles, for each
+            for (int i = 0; i < 1_000 * (h + 1); i++)
+                histograms[h].sampleNanos(1_000 + random.nextInt(100_000));
+        }
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (double[] percentiles : new double[][]{null, {0.5, 0.95, 1.0}}) {
+                final double[][] sequential = new PercentileEngine(null).percentiles(histograms, percentiles);
+                final double[][] parallel = new PercentileEngine(pool).percentiles(histograms, percentiles);
+                assertEquals(histograms.length, parallel.length);
+                for (int h = 0; h < histograms.length; h++)
+                    assertArrayEquals(sequential[h], parallel[h], 0.0);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldCalculateEveryProbeOfARun() {
+        final JLBHResultConsumer resultConsumer = JLBHResultConsumer.newThreadSafeInstance();
+        final JLBHOptions options = new JLBHOptions()
+                .warmUpIterations(500)
+                .iterations(2_000)
+                .runs(2)
+                .throughput(100_000)
+                .accountForCoordinatedOmission(false)
+                .recordOSJitter(false)
+                .parallelPercentiles(true)
+                .jlbhTask(new ProbesTask());
+        new JLBH(options, new PrintStream(new ByteArrayOutputStream()), resultConsumer).start();
+
+        final JLBHResult result = resultConsumer.get();
+        assertEquals(PROBES, result.probeNames().size());
+        for (int p = 0; p < PROBES; p++) {
+            final JLBHResult.ProbeResult probe = result.probe("probe" + p).orElseThrow(AssertionError::new);
+            assertEquals(2, probe.eachRunSummary().size());
+            for (JLBHResult.RunResult run : probe.eachRunSummary())
+                assertEquals(1_000 * (p + 1), run.get50thPercentile().toNanos(), 10 * (p + 1));
+        }
+    }
+
+    // each probe samples a different constant latency
+    private static final class ProbesTask implements JLBHTask {
+        private final NanoSampler[] probes = new NanoSampler[PROBES];
+        private JLBH jlbh;
+
+        @Override
+        public void init(JLBH jlbh) {
+            this.jlbh = jlbh;
+            for (int p = 0; p < PROBES; p++)
+                probes[p] = jlbh.addProbe("probe" + p);
+        }
+
+        @Override
+        public void run(long startTimeNS) {
+            for (int p = 0; p < PROBES; p++)
+                probes[p].sampleNanos(1_000 * (p + 1));
+            jlbh.sample(1_000);
+        }
+    }
+}
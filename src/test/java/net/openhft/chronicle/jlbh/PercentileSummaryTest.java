@@ -105,6 +105,19 @@ public class PercentileSummaryTest {
         assertEquals(0, percentileSummary.calculateVariance(percentiles.length - 2), DELTA);
     }
 
+    @Test
+    public void testVarianceOfZeros() {
+        List<double[]> percentileSummaries = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            percentileSummaries.add(new double[]{0, 1_000});
+        double[] percentiles = new double[]{0.5, 1.0};
+
+        final PercentileSummary percentileSummary = new PercentileSummary(false, percentileSummaries, percentiles);
+
+        assertEquals(0, percentileSummary.calculateVariance(0), DELTA);
+        assertEquals(0, percentileSummary.calculateVariance(1), DELTA);
+    }
+
     @Test
     public void testVarianceSkipFirst() {
         List<double[]> percentileSummaries = new ArrayList<>();
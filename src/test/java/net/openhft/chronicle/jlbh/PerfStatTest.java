@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.options;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PerfStatTest {
+
+    @Test
+    public void shouldParseCsvOutput() {
+        final Map<String, Long> counts = PerfStat.parse(Arrays.asList(
+                "# started on Mon Oct 19 10:00:00 2026",
+                "",
+                "123456789,,cycles,1000000,100.00,,",
+                "234567890,,instructions,1000000,100.00,1.90,insn per cycle",
+                "<not supported>,,LLC-load-misses,0,100.00,,",
+                "4567,,L1-dcache-load-misses:u,1000000,100.00,,",
+                "3,,context-switches,1000000,100.00,0.003,K/sec"));
+
+        final Map<String, Long> expected = new LinkedHashMap<>();
+        expected.put("cycles", 123456789L);
+        expected.put("instructions", 234567890L);
+        expected.put("L1-dcache-load-misses", 4567L);
+        expected.put("context-switches", 3L);
+        assertEquals(expected, counts);
+    }
+
+    @Test
+    public void shouldReportCountsPerIteration() {
+        final Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put("cycles", 2_000_000L);
+        counts.put("instructions", 3_000_000L);
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new TextJLBHReporter(new PrintStream(baos)).perfCounters(1, 1_000, counts);
+
+        final String text = baos.toString();
+        assertThat(text, containsString("cycles/iteration (2,000,000)                    2,000.00\n"));
+        assertThat(text, containsString("instructions/cycle                              1.50\n"));
+    }
+
+    @Test
+    public void shouldCompleteWhenPerfIsNotAvailable() {
+        final JLBHResultConsumer resultConsumer = JLBHResultConsumer.newThreadSafeInstance();
+        new JLBH(options().perfCounterEvents("no-such-event"), new PrintStream(new ByteArrayOutputStream()), resultConsumer).start();
+
+        // either perf is not installed, or it can't count the event
+        assertTrue(resultConsumer.get().perfCountersPerIteration().isEmpty());
+        assertEquals(JLBHDeterministicFixtures.RUNS, resultConsumer.get().endToEnd().eachRunSummary().size());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.*;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.*;
+
+public class RequestCorrelatorTest {
+
+    @Test
+    public void shouldCompleteOutOfOrder() {
+        final RequestCorrelator correlator = new RequestCorrelator(4, 1_000);
+        try {
+            assertEquals(4, correlator.capacity());
+            assertEquals(0, correlator.begin(10, 100));
+            assertEquals(0, correlator.begin(11, 110));
+            assertEquals(0, correlator.begin(-12, 120));
+            assertEquals(120, correlator.complete(-12));
+            assertEquals(100, correlator.complete(10));
+            assertEquals(RequestCorrelator.NOT_FOUND, correlator.complete(10));
+            assertEquals(RequestCorrelator.NOT_FOUND, correlator.complete(13));
+            assertEquals(110, correlator.complete(11));
+        } finally {
+            correlator.close();
+        }
+    }
+
+    @Test
+    public void shouldReuseSlots() {
+        final RequestCorrelator correlator = new RequestCorrelator(8, 1_000);
+        try {
+            for (long id = 0; id < 100_000; id++) {
+                correlator.begin(id, id);
+                correlator.begin(~id, id);
+                assertEquals(id, correlator.complete(id));
+                assertEquals(id, correlator.complete(~id));
+            }
+        } finally {
+            correlator.close();
+        }
+    }
+
+    @Test
+    public void shouldExpireStaleRequests() {
+        final RequestCorrelator correlator = new RequestCorrelator(4, 1_000);
+        try {
+            correlator.begin(1, 0);
+            correlator.begin(2, 500);
+            correlator.begin(3, 900);
+            assertEquals(0, correlator.expire(1_000));
+            assertEquals(1, correlator.expire(1_001));
+            assertEquals(RequestCorrelator.NOT_FOUND, correlator.complete(1));
+            // expired as other requests are begun
+            int expired = 0;
+            for (long id = 4; id < 8; id++) {
+                expired += correlator.begin(id, 2_000);
+                correlator.complete(id);
+            }
+            assertEquals(2, expired);
+            assertEquals(0, correlator.expire(10_000));
+        } finally {
+            correlator.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectTooManyOutstanding() {
+        final RequestCorrelator correlator = new RequestCorrelator(2, 1_000);
+        try {
+            correlator.begin(1, 0);
+            correlator.begin(2, 0);
+            correlator.begin(3, 0);
+        } finally {
+            correlator.close();
+        }
+    }
+
+    @Test
+    public void shouldCountLostResponsesSeparately() {
+        final List<Long> lost = new ArrayList<>();
+        final List<Boolean> lateResponses = new ArrayList<>();
+        final JLBHTask task = new JLBHTask() {
+            private JLBH jlbh;
+            private long id;
+
+            @Override
+            public void init(JLBH jlbh) {
+                this.jlbh = jlbh;
+            }
+
+            @Override
+            public void run(long startTimeNS) {
+                jlbh.begin(id, startTimeNS);
+                // respond to each pair in reverse order, and drop one in ten
+                if (id % 2 == 1) {
+                    jlbh.complete(id);
+                    if ((id - 1) % 10 != 0)
+                        jlbh.complete(id - 1);
+                }
+                id++;
+            }
+
+            @Override
+            public void complete() {
+                lateResponses.add(jlbh.complete(id - 10));
+            }
+        };
+        final JLBHOptions options = options()
+                .jlbhTask(task)
+                .recordOSJitter(false)
+                .correlation(4096, TimeUnit.MILLISECONDS.toNanos(10))
+                .addReporter(new JLBHReporter() {
+                    @Override
+                    public void lostResponses(int run, long lostResponses) {
+                        lost.add(lostResponses);
+                    }
+                });
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new JLBH(options, new PrintStream(baos), null).start();
+
+        assertEquals(Arrays.asList(ITERATIONS / 10L, ITERATIONS / 10L, ITERATIONS / 10L), lost);
+        assertThat(baos.toString(), containsString("Lost responses: 900"));
+        assertEquals(Arrays.asList(false), lateResponses);
+    }
+}
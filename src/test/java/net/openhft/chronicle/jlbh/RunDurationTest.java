@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.util.Histogram;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RunDurationTest {
+
+    @Test
+    public void shouldEndEachRunAfterTheDuration() {
+        final List<Long> counts = new CopyOnWriteArrayList<>();
+        final JLBHResultConsumer resultConsumer = JLBHResultConsumer.newThreadSafeInstance();
+        final JLBHOptions options = new JLBHOptions()
+                .warmUpIterations(500)
+                // far more than can be run in the duration
+                .iterations(100_000_000)
+                .runDuration(Duration.ofMillis(200))
+                .runs(3)
+                .throughput(10_000)
+                .accountForCoordinatedOmission(true)
+                .recordOSJitter(false)
+                .addReporter(new JLBHReporter() {
+                    @Override
+                    public void endToEnd(int run, @NotNull Histogram histogram, @NotNull double[] percentiles) {
+                        counts.add(histogram.totalCount());
+                    }
+                })
+                .jlbhTask(new JLBHDeterministicFixtures.PredictableJLBHTask());
+        final long start = System.nanoTime();
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new JLBH(options, new PrintStream(baos), resultConsumer).start();
+
+        final long elapsedNs = System.nanoTime() - start;
+        assertTrue(elapsedNs >= 3 * 200_000_000L && elapsedNs < 30_000_000_000L);
+        assertEquals(3, counts.size());
+        // no more than the iterations scheduled in the duration, fewer if the schedule slipped
+        for (long count : counts)
+            assertTrue(String.valueOf(count), count > 0 && count <= 2_000);
+        // the percentiles of every run are chosen by the first
+        final List<JLBHResult.RunResult> runs = resultConsumer.get().endToEnd().eachRunSummary();
+        assertEquals(3, runs.size());
+        for (JLBHResult.RunResult run : runs)
+            assertEquals(runs.get(0).percentiles().keySet(), run.percentiles().keySet());
+        // and each run is written with them, as in the summary
+        final Matcher matcher = Pattern.compile("End to End: \\([\\d,]+\\) +(\\S+) - worst was ").matcher(baos.toString());
+        for (int run = 0; run < 3; run++) {
+            assertTrue(matcher.find());
+            assertEquals(matcher.group(1), runs.get(0).percentiles().size(), matcher.group(1).split("/").length + 1);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectANonPositiveDuration() {
+        new JLBHOptions().runDuration(Duration.ZERO);
+    }
+}
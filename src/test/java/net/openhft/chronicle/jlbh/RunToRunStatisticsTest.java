@@ -0,0 +1,227 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.Double.POSITIVE_INFINITY;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.*;
+
+public class RunToRunStatisticsTest {
+
+    private static final double DELTA = 1e-9;
+    private static final int SLOW_RUN = 3;
+
+    @Test
+    public void shouldCalculateRobustStatistics() {
+        final RunToRunStatistics statistics = RunToRunStatistics.of(new double[]{1.0, 1.2, 1.1, 1.3, POSITIVE_INFINITY}, false);
+
+        assertEquals(4, statistics.count());
+        assertEquals(1.15, statistics.median(), DELTA);
+        assertEquals(0.1, statistics.medianAbsoluteDeviation(), DELTA);
+        assertEquals(1.15, statistics.mean(), DELTA);
+        final double stddev = Math.sqrt(0.05 / 3);
+        assertEquals(stddev, statistics.stddev(), DELTA);
+        assertEquals(stddev / 1.15, statistics.coefficientOfVariation(), DELTA);
+        // t for 3 degrees of freedom is 3.182
+        assertEquals(1.15 - 3.182 * stddev / 2, statistics.confidenceLow(), 0.002);
+        assertEquals(1.15 + 3.182 * stddev / 2, statistics.confidenceHigh(), 0.002);
+        assertEquals(0, statistics.outlierRuns().length);
+    }
+
+    @Test
+    public void shouldFlagOneNoisyRun() {
+        final RunToRunStatistics statistics = RunToRunStatistics.of(new double[]{9.0, 1.0, 1.01, 0.99, 1.0, 2.0, 1.02}, true);
+
+        assertEquals(6, statistics.count());
+        assertEquals(1.005, statistics.median(), DELTA);
+        assertEquals("[5]", Arrays.toString(statistics.outlierRuns()));
+    }
+
+    @Test
+    public void shouldNotFlagRunsWithinTheMinimumDeviation() {
+        // the MAD is zero, but 1.02 is within 5% of the median
+        assertEquals(0, RunToRunStatistics.of(new double[]{1.0, 1.0, 1.0, 1.0, 1.02}, false).outlierRuns().length);
+        // too few runs
+        assertEquals(0, RunToRunStatistics.of(new double[]{1.0, 9.0}, false).outlierRuns().length);
+    }
+
+    @Test
+    public void shouldHandleNoValues() {
+        final RunToRunStatistics statistics = RunToRunStatistics.of(new double[]{1.0, POSITIVE_INFINITY}, true);
+
+        assertEquals(0, statistics.count());
+        assertTrue(Double.isNaN(statistics.median()));
+        assertEquals(0, statistics.outlierRuns().length);
+    }
+
+    @Test
+    public void shouldNotReportAVariationWithoutValues() {
+        final List<double[]> runs = new ArrayList<>();
+        runs.add(new double[]{1_000, 2_000});
+        final PercentileSummary summary = new PercentileSummary(true, runs, new double[]{0.5, 1.0});
+
+        assertEquals(0, summary.calculateVariance(0), DELTA);
+        summary.forEachStatistic(new double[1], (statistic, values, variation) -> fail());
+    }
+
+    @Test
+    public void shouldFindTheOutlierRunsOfASummary() {
+        final List<double[]> runs = new ArrayList<>();
+        for (int run = 0; run < 5; run++)
+            runs.add(run == 2 ? new double[]{5_000, 5_000} : new double[]{1_000, 50_000 * (run + 1)});
+        final PercentileSummary summary = new PercentileSummary(false, runs, new double[]{0.5, 1.0});
+
+        // the worst varies between every run, but is not used to find outliers
+        assertEquals("[2]", Arrays.toString(summary.outlierRuns()));
+        final List<Double> percentiles = new ArrayList<>();
+        summary.forEachRunToRun((percentile, statistics) -> percentiles.add(percentile));
+        assertEquals(Arrays.asList(0.5, 1.0), percentiles);
+    }
+
+    @Test
+    public void shouldRepeatAnOutlierRun() {
+        final RecordingReporter reporter = new RecordingReporter();
+        final JLBHResultConsumer resultConsumer = JLBHResultConsumer.newThreadSafeInstance();
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new JLBH(options().repeatOutlierRuns(2).addReporter(reporter), new PrintStream(baos), resultConsumer).start();
+
+        assertEquals(Arrays.asList(SLOW_RUN + "/true"), reporter.outliers);
+        assertEquals(6, reporter.runs.size());
+        assertEquals(Arrays.asList("end to end"), reporter.runToRunLabels);
+
+        final JLBHResult.ProbeResult endToEnd = resultConsumer.get().endToEnd();
+        assertEquals(5, endToEnd.eachRunSummary().size());
+        for (JLBHResult.RunResult run : endToEnd.eachRunSummary())
+            assertEquals(1_000, run.get50thPercentile().toNanos(), 10);
+
+        final String text = baos.toString();
+        assertThat(text, containsString("Run " + SLOW_RUN + " is an outlier, repeating it"));
+        assertThat(text, containsString("RUN TO RUN (end to end) us"));
+    }
+
+    @Test
+    public void shouldFlagAnOutlierRunWithoutRepeatingIt() {
+        final RecordingReporter reporter = new RecordingReporter();
+        final JLBHResultConsumer resultConsumer = JLBHResultConsumer.newThreadSafeInstance();
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new JLBH(options().runToRunStatistics(true).addReporter(reporter), new PrintStream(baos), resultConsumer).start();
+
+        assertEquals(Arrays.asList(SLOW_RUN + "/false"), reporter.outliers);
+        assertEquals(5, reporter.runs.size());
+        assertEquals(5, resultConsumer.get().endToEnd().eachRunSummary().size());
+        assertThat(baos.toString(), containsString("WARNING: Run " + SLOW_RUN + " is an outlier"));
+    }
+
+    @Test
+    public void shouldLabelOutliersByRunNumberAfterARepeat() {
+        final RecordingReporter reporter = new RecordingReporter();
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        // run 2 is repeated as run 6, leaving run 4 in the third position of the summary
+        new JLBH(options().repeatOutlierRuns(1).jlbhTask(new SlowRunTask(2, 4)).addReporter(reporter),
+                new PrintStream(baos), null).start();
+
+        assertEquals(Arrays.asList("2/true", "4/false", "4/false"), reporter.outliers);
+        assertEquals(Arrays.asList("[1, 3, 4, 5, 6]"), reporter.runNumbers);
+        final Matcher matcher = Pattern.compile("(?m)^50\\.0: .*  (run\\d+)$").matcher(baos.toString());
+        assertTrue(baos.toString(), matcher.find());
+        assertEquals("run4", matcher.group(1));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotRepeatInContinuousMode() {
+        new JLBH(options().repeatOutlierRuns(1).continuous(true), new PrintStream(new ByteArrayOutputStream()), null).start();
+    }
+
+    @NotNull
+    private static JLBHOptions options() {
+        return new JLBHOptions()
+                .warmUpIterations(500)
+                .iterations(2_000)
+                .runs(5)
+                .throughput(100_000)
+                .accountForCoordinatedOmission(false)
+                .recordOSJitter(false)
+                .skipFirstRun(false)
+                .jlbhTask(new SlowRunTask());
+    }
+
+    // the slow runs, by default the third, are five times slower than the others
+    private static final class SlowRunTask implements JLBHTask {
+        private final int[] slowRuns;
+        private JLBH jlbh;
+        private int runsComplete;
+
+        SlowRunTask(int... slowRuns) {
+            this.slowRuns = slowRuns.length == 0 ? new int[]{SLOW_RUN} : slowRuns;
+        }
+
+        @Override
+        public void init(JLBH jlbh) {
+            this.jlbh = jlbh;
+        }
+
+        @Override
+        public void run(long startTimeNS) {
+            boolean slow = false;
+            for (int run : slowRuns)
+                slow |= runsComplete == run - 1;
+            jlbh.sample(slow ? 5_000 : 1_000);
+        }
+
+        @Override
+        public void runComplete() {
+            runsComplete++;
+        }
+    }
+
+    private static final class RecordingReporter implements JLBHReporter {
+        final List<Integer> runs = new CopyOnWriteArrayList<>();
+        final List<String> outliers = new CopyOnWriteArrayList<>();
+        final List<String> runToRunLabels = new CopyOnWriteArrayList<>();
+        final List<String> runNumbers = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void runComplete(int run) {
+            runs.add(run);
+        }
+
+        @Override
+        public void outlierRun(int run, boolean repeated) {
+            outliers.add(run + "/" + repeated);
+        }
+
+        @Override
+        public void runToRunSummary(@NotNull String label, @NotNull PercentileSummary summary, @NotNull int[] runNumbers) {
+            runToRunLabels.add(label);
+            this.runNumbers.add(Arrays.toString(runNumbers));
+        }
+    }
+}
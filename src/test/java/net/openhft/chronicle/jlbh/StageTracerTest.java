@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.jlbh;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.*;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class StageTracerTest {
+
+    @Test
+    public void shouldBreakDownTheTailByStage() {
+        final List<Long> messages = new ArrayList<>();
+        final List<Map<String, Double>> shares = new ArrayList<>();
+        final JLBHTask task = new JLBHTask() {
+            private JLBH jlbh;
+            private StageTracer tracer;
+            private int count;
+
+            @Override
+            public void init(JLBH jlbh) {
+                this.jlbh = jlbh;
+                tracer = jlbh.addStageTracer("order", 16 * 1024, "decode", "match");
+            }
+
+            @Override
+            public void run(long startTimeNS) {
+                // one in a hundred messages is slow to match
+                final long match = count++ % 100 == 0 ? 50_000 : 500;
+                final long message = tracer.begin(startTimeNS);
+                tracer.mark(message, 0, startTimeNS + 1_000);
+                tracer.mark(message, 1, startTimeNS + 1_000 + match);
+                jlbh.sample(1_000 + match);
+            }
+        };
+        final JLBHOptions options = options()
+                .jlbhTask(task)
+                .recordOSJitter(false)
+                .addReporter(new JLBHReporter() {
+                    @Override
+                    public void stageBreakdown(int run, @NotNull String name, double percentile, long tailMessages, @NotNull Map<String, Double> tailShares) {
+                        assertEquals("order", name);
+                        assertEquals(0.99, percentile, 0);
+                        messages.add(tailMessages);
+                        shares.add(tailShares);
+                    }
+                });
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new JLBH(options, new PrintStream(baos), null).start();
+
+        assertEquals(RUNS, messages.size());
+        for (int run = 0; run < RUNS; run++) {
+            assertEquals(ITERATIONS / 100, (long) messages.get(run));
+            assertArrayEquals(new Object[]{"decode", "match"}, shares.get(run).keySet().toArray());
+            assertEquals(1_000 / 51_000.0, shares.get(run).get("decode"), 1e-9);
+            assertEquals(50_000 / 51_000.0, shares.get(run).get("match"), 1e-9);
+        }
+        assertThat(baos.toString(), containsString("Stage breakdown (order) of 90 messages at or over the 99.0 percentile: decode 2.0% match 98.0%"));
+    }
+
+    @Test
+    public void shouldIgnoreIncompleteMessages() {
+        final StageTracer tracer = new StageTracer("test", 4, "a", "b");
+        try {
+            final long first = tracer.begin(100);
+            tracer.mark(first, 0, 110);
+            tracer.mark(first, 1, 130);
+            final long second = tracer.begin(200);
+            tracer.mark(second, 0, 500);
+            tracer.analyseRun();
+            assertEquals(1, tracer.tailMessages());
+            assertEquals(10 / 30.0, tracer.tailShares()[0], 1e-9);
+
+            tracer.reset();
+            tracer.analyseRun();
+            assertEquals(0, tracer.tailMessages());
+        } finally {
+            tracer.close();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.jlbh;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.util.NanoSampler;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.RUNS;
+import static net.openhft.chronicle.jlbh.JLBHDeterministicFixtures.options;
+import static org.junit.Assert.*;
+
+public class VirtualThreadDriverTest {
+
+    private static final int MAX_IN_FLIGHT = 200;
+
+    @Test
+    public void shouldRunBlockingTasksConcurrently() {
+        final JLBHTask blocking = new JLBHTask() {
+            private JLBH jlbh;
+            private NanoSampler probe;
+
+            @Override
+            public void init(JLBH jlbh) {
+                this.jlbh = jlbh;
+                this.probe = jlbh.addProbe("blocked");
+            }
+
+            @Override
+            public void run(long startTimeNS) {
+                // a blocking call which takes 100 us, at 1 us between requests
+                LockSupport.parkNanos(100_000);
+                final long latency = System.nanoTime() - startTimeNS;
+                probe.sampleNanos(latency);
+                jlbh.sample(latency);
+            }
+        };
+        final JLBHOptions jlbhOptions = options().jlbhTask(blocking).virtualThreads(MAX_IN_FLIGHT);
+        if (Jvm.majorVersion() < 21) {
+            try {
+                new JLBH(jlbhOptions);
+                fail("Virtual threads should not be available on Java " + Jvm.majorVersion());
+            } catch (UnsupportedOperationException expected) {
+                // expected
+            }
+            return;
+        }
+
+        final JLBHResultConsumer resultConsumer = JLBHResultConsumer.newThreadSafeInstance();
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new JLBH(jlbhOptions, new PrintStream(baos), resultConsumer).start();
+
+        assertEquals(RUNS, resultConsumer.get().endToEnd().eachRunSummary().size());
+        final Matcher matcher = Pattern.compile("Virtual threads: max in flight ([\\d,]+), pinned ([\\d,]+) times").matcher(baos.toString());
+        for (int run = 1; run <= RUNS; run++) {
+            assertTrue(matcher.find());
+            final int maxInFlight = Integer.parseInt(matcher.group(1).replace(",", ""));
+            assertTrue("maxInFlight " + maxInFlight, maxInFlight > 1 && maxInFlight <= MAX_IN_FLIGHT);
+        }
+    }
+
+    @Test
+    public void shouldStopWaitingForAnIterationWhenInterrupted() throws InterruptedException {
+        if (Jvm.majorVersion() < 21)
+            return;
+
+        final CountDownLatch hung = new CountDownLatch(1);
+        final VirtualThreadDriver driver = new VirtualThreadDriver(new JLBHTask() {
+            @Override
+            public void init(JLBH jlbh) {
+            }
+
+            @Override
+            public void run(long startTimeNS) {
+                try {
+                    hung.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, 1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        // the second iteration waits for the first, which never completes
+        final Thread benchmark = new Thread(() -> {
+            driver.run(System.nanoTime());
+            driver.run(System.nanoTime());
+            interrupted.set(Thread.currentThread().isInterrupted());
+        });
+        try {
+            benchmark.start();
+            Thread.sleep(100);
+            benchmark.interrupt();
+            benchmark.join(5_000);
+            assertFalse(benchmark.isAlive());
+            assertTrue(interrupted.get());
+        } finally {
+            hung.countDown();
+            driver.close();
+        }
+    }
+}